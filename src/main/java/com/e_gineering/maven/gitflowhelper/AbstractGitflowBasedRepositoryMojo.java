@@ -3,50 +3,33 @@ package com.e_gineering.maven.gitflowhelper;
 import org.apache.maven.artifact.repository.ArtifactRepository;
 import org.apache.maven.artifact.repository.ArtifactRepositoryFactory;
 import org.apache.maven.artifact.repository.layout.ArtifactRepositoryLayout;
-import org.apache.maven.model.Repository;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
 import org.apache.maven.project.MavenProjectHelper;
-import org.codehaus.plexus.util.FileUtils;
-import org.eclipse.aether.DefaultRepositorySystemSession;
-import org.eclipse.aether.RepositorySystemSession;
-import org.eclipse.aether.artifact.DefaultArtifact;
 import org.eclipse.aether.impl.ArtifactResolver;
 import org.eclipse.aether.internal.impl.EnhancedLocalRepositoryManagerFactory;
-import org.eclipse.aether.repository.LocalRepository;
 import org.eclipse.aether.repository.RemoteRepository;
-import org.eclipse.aether.repository.RepositoryPolicy;
-import org.eclipse.aether.resolution.ArtifactRequest;
-import org.eclipse.aether.resolution.ArtifactResolutionException;
 import org.eclipse.aether.resolution.ArtifactResult;
-import org.eclipse.aether.util.repository.AuthenticationBuilder;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.nio.charset.Charset;
-import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Common configuration and plumbing (support methods) for Repository operations on Gitflow Mojo.
  */
 public abstract class AbstractGitflowBasedRepositoryMojo extends AbstractGitflowBranchMojo {
 
-    private static final Pattern ALT_REPO_SYNTAX_PATTERN = Pattern.compile("(.+)::(.+)::(.+)::(.+)");
-
     @Parameter(property = "releaseDeploymentRepository", required = true)
     protected String releaseDeploymentRepository;
 
@@ -56,9 +39,6 @@ public abstract class AbstractGitflowBasedRepositoryMojo extends AbstractGitflow
     @Parameter(property = "snapshotDeploymentRepository", required = true)
     protected String snapshotDeploymentRepository;
 
-    @Parameter(defaultValue = "${repositorySystemSession}", required = true)
-    protected RepositorySystemSession session;
-
     @Component
     protected EnhancedLocalRepositoryManagerFactory localRepositoryManagerFactory;
 
@@ -69,7 +49,7 @@ public abstract class AbstractGitflowBasedRepositoryMojo extends AbstractGitflow
     protected ArtifactRepositoryFactory repositoryFactory;
 
     @Component
-    private ArtifactResolver artifactResolver;
+    protected ArtifactResolver artifactResolver;
 
     @Component
     private MavenProjectHelper projectHelper;
@@ -78,8 +58,78 @@ public abstract class AbstractGitflowBasedRepositoryMojo extends AbstractGitflow
     private Map<String, ArtifactRepositoryLayout> repositoryLayouts;
 
     /**
-     * Builds an ArtifactRepository for targeting deployments
-     * .
+     * The number of catalogued artifacts to resolve concurrently when attaching existing artifacts. The
+     * <code>update-stage-dependencies</code> goal has its own <code>purgeThreads</code> instead.
+     */
+    @Parameter(property = "resolutionThreads", defaultValue = "1")
+    protected int resolutionThreads = 1;
+
+    /**
+     * The number of times to retry resolving a catalogued artifact which failed to resolve.
+     */
+    @Parameter(property = "resolutionRetries", defaultValue = "0")
+    protected int resolutionRetries = 0;
+
+    /**
+     * How resolved artifacts are placed into the build directory: <code>copy</code>, <code>transfer</code> (in-kernel
+     * copy), <code>reflink</code> (copy-on-write clone), <code>link</code> (hard link) or <code>auto</code> (the
+     * cheapest possible). Strategies which aren't possible fall back to the next cheapest one, except that a hard link
+     * falls back to <code>transfer</code>: reflinks are only used when asked for.
+     */
+    @Parameter(property = "attachStrategy", defaultValue = "copy")
+    protected String attachStrategy = "copy";
+
+    /**
+     * The version of the artifact catalog to write. Version 2 records the size and SHA-256 digest of every artifact,
+     * which lets promotion verify downloads and skip artifacts already present. Version 1 (the default) lists
+     * coordinates only, and is the only version earlier releases of this plugin can promote.
+     */
+    @Parameter(property = "catalogVersion", defaultValue = "1")
+    protected int catalogVersion = 1;
+
+    /**
+     * A directory to keep a persistent cache of promoted artifacts in, keyed by their SHA-256 digest, when the local
+     * repository is disabled. Only artifacts listed in a version 2 catalog are cached. Unset (the default) disables
+     * the cache.
+     */
+    @Parameter(property = "artifactCacheDirectory")
+    protected File artifactCacheDirectory;
+
+    /**
+     * The maximum size of the artifact cache, in megabytes. The least recently used artifacts are evicted beyond it.
+     */
+    @Parameter(property = "artifactCacheSize", defaultValue = "10240")
+    protected long artifactCacheSize = 10240;
+
+    /**
+     * Resolve the catalogued artifacts of every module in the reactor together, when the first module is promoted,
+     * rather than separately for each module.
+     */
+    @Parameter(property = "batchPromotion", defaultValue = "false")
+    protected boolean batchPromotion;
+
+    /**
+     * Resolve the artifacts promoted by promote-master and fast-promote into a temporary local repository, removed
+     * once they are attached, rather than into the local repository of the build.
+     */
+    @Parameter(property = "disableLocal", defaultValue = "true")
+    protected boolean disableLocal = true;
+
+    /**
+     * Have the build extension start resolving the catalogued artifacts of every module in the background, as soon as
+     * the projects have been read on a master or support branch, so promotion overlaps with the rest of the build.
+     * Only done when the build runs the deploy phase, or invokes promote-master or fast-promote directly. Read by the
+     * build extension from the plugin configuration (or user properties).
+     */
+    @Parameter(property = "prefetchPromotion", defaultValue = "false")
+    protected boolean prefetchPromotion;
+
+    @Parameter(defaultValue = "${reactorProjects}", readonly = true, required = true)
+    protected List<MavenProject> reactorProjects;
+
+    /**
+     * Builds an ArtifactRepository for targeting deployments, or returns the one already built for the same repository
+     * definition during this session.
      *
      * @param altRepository
      * @return
@@ -87,44 +137,12 @@ public abstract class AbstractGitflowBasedRepositoryMojo extends AbstractGitflow
      * @throws MojoFailureException
      */
     protected ArtifactRepository getDeploymentRepository(final String altRepository) throws MojoExecutionException, MojoFailureException {
-        Matcher matcher = ALT_REPO_SYNTAX_PATTERN.matcher(altRepository);
-        Repository candidate = null;
-        if (!matcher.matches()) {
-            for (int i = 0; i < project.getRepositories().size(); i++) {
-                candidate = project.getRepositories().get(i);
-                getLog().debug("Checking defined repository ID: " + candidate.getId().trim() + " against: " + altRepository.trim());
-                if (candidate.getId().trim().equals(altRepository.trim())) {
-                    break;
-                }
-                candidate = null;
-            }
-
-            if (candidate == null) {
-                throw new MojoFailureException(altRepository, "Invalid syntax for repository or repository id not resolved..",
-                        "Invalid syntax for repository. Use \"id::layout::url::unique\" or only specify the \"id\".");
-            }
-        }
-
-        if (getLog().isDebugEnabled()) {
-            getLog().debug("Getting maven deployment repository (to target artifacts) for: " + altRepository);
-        }
-
-        if (candidate == null) {
-            String id = matcher.group(1).trim();
-            String layout = matcher.group(2).trim();
-            String url = matcher.group(3).trim();
-            boolean unique = Boolean.parseBoolean(matcher.group(4).trim());
-
-            ArtifactRepositoryLayout repoLayout = getLayout(layout);
-
-            return repositoryFactory.createDeploymentArtifactRepository(id, url, repoLayout, unique);
-        } else {
-            return repositoryFactory.createDeploymentArtifactRepository(candidate.getId(), candidate.getUrl(), getLayout(candidate.getLayout()), candidate.getSnapshots().isEnabled());
-        }
+        return getDeploymentRepositories().getDeploymentRepository(project, altRepository);
     }
 
     /**
-     * Builds a RemoteRepository for resolving artifacts.
+     * Builds a RemoteRepository for resolving artifacts, or returns the one already built for the same repository and
+     * authentication during this session.
      *
      * @param altRepository
      * @return
@@ -132,30 +150,7 @@ public abstract class AbstractGitflowBasedRepositoryMojo extends AbstractGitflow
      * @throws MojoFailureException
      */
     protected RemoteRepository getRepository(final String altRepository) throws MojoExecutionException, MojoFailureException {
-        if (getLog().isDebugEnabled()) {
-            getLog().debug("Creating remote Aether repository (to resolve remote artifacts) for: " + altRepository);
-        }
-        // Get an appropriate injected ArtifactRepository. (This resolves authentication in the 'normal' manner from Maven)
-        ArtifactRepository remoteArtifactRepo = getDeploymentRepository(altRepository);
-
-        if (getLog().isDebugEnabled()) {
-            getLog().debug("Resolved maven deployment repository. Transcribing to Aether Repository...");
-        }
-
-        RemoteRepository.Builder remoteRepoBuilder = new RemoteRepository.Builder(remoteArtifactRepo.getId(), remoteArtifactRepo.getLayout().getId(), remoteArtifactRepo.getUrl());
-
-        // Add authentication.
-        if (remoteArtifactRepo.getAuthentication() != null) {
-            if (getLog().isDebugEnabled()) {
-                getLog().debug("Maven deployment repsoitory has Authentication. Transcribing to Aether Authentication...");
-            }
-            remoteRepoBuilder.setAuthentication(new AuthenticationBuilder().addUsername(remoteArtifactRepo.getAuthentication().getUsername())
-                    .addPassword(remoteArtifactRepo.getAuthentication().getPassword())
-                    .addPrivateKey(remoteArtifactRepo.getAuthentication().getPrivateKey(), remoteArtifactRepo.getAuthentication().getPassphrase())
-                    .build());
-        }
-
-        return remoteRepoBuilder.build();
+        return getDeploymentRepositories().getRepository(project, altRepository);
     }
 
     private String getCoordinates(ArtifactResult result) {
@@ -201,7 +196,8 @@ public abstract class AbstractGitflowBasedRepositoryMojo extends AbstractGitflow
 
     /**
      * Creates and attaches an artifact containing a list of attached artifacts, each line in the file contains
-     * group:artifact:type:classifier:version
+     * group:artifact:type:classifier:version, followed by the size and SHA-256 digest of the file for version 2
+     * catalogs.
      */
     protected void attachArtifactCatalog() throws MojoExecutionException {
         getLog().info("Cataloging Artifacts for promotion & reattachment: " + project.getBuild().getDirectory());
@@ -215,12 +211,14 @@ public abstract class AbstractGitflowBasedRepositoryMojo extends AbstractGitflow
             buildDirectory.mkdirs();
             writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(catalog), Charset.forName("UTF-8")));
 
+            List<ArtifactCatalog.Entry> entries = new ArrayList<ArtifactCatalog.Entry>();
+
             if (project.getArtifact() != null && project.getArtifact().getFile() != null &&
                     project.getArtifact().getFile().exists() && !project.getArtifact().getFile().isDirectory()) {
                 String coords = getCoordinates(project.getArtifact());
                 if (!coords.isEmpty()) {
                     getLog().info("Cataloging: " + coords);
-                    writer.println(coords);
+                    entries.add(ArtifactCatalog.Entry.of(coords, project.getArtifact().getFile(), catalogVersion));
                 }
             } else {
                 getLog().info("No primary artifact to catalog, cataloging attached artifacts instead.");
@@ -231,10 +229,12 @@ public abstract class AbstractGitflowBasedRepositoryMojo extends AbstractGitflow
                 String coords = getCoordinates(artifact);
                 if (!coords.isEmpty()) {
                     getLog().info("Cataloging: " + coords);
-                    writer.println(coords);
+                    entries.add(ArtifactCatalog.Entry.of(coords, artifact.getFile(), catalogVersion));
                 }
             }
 
+            new ArtifactCatalog(entries).write(writer, catalogVersion);
+
             getLog().info("Attaching catalog artifact: " + catalog);
             projectHelper.attachArtifact(project, "txt", "catalog", catalog);
         } catch (IOException ioe) {
@@ -267,111 +267,99 @@ public abstract class AbstractGitflowBasedRepositoryMojo extends AbstractGitflow
             remoteRepositories.addAll(Arrays.asList(getRepository(sourceRepository)));
         }
 
-        // A place to store our resolved files...
-        List<ArtifactResult> resolvedArtifacts = new ArrayList<ArtifactResult>();
-
-
-        // Use a custom repository session, setup to force a few behaviors we like.
-        DefaultRepositorySystemSession tempSession = new DefaultRepositorySystemSession(session);
-        tempSession.setUpdatePolicy(RepositoryPolicy.UPDATE_POLICY_ALWAYS);
+        final AttachStrategy strategy;
+        try {
+            strategy = AttachStrategy.fromName(attachStrategy);
+        } catch (IllegalArgumentException iae) {
+            throw new MojoExecutionException("Invalid attachStrategy: " + attachStrategy + ". Use one of: auto, link, reflink, transfer, copy.");
+        }
 
-        File tempRepo = null;
-        if (disableLocal) {
-            getLog().info("Disabling local repository @ " + tempSession.getLocalRepository().getBasedir());
-            try {
-                tempRepo = Files.createTempDirectory("gitflow-helper-maven-plugin-repo").toFile();
+        CatalogResolver resolver = new CatalogResolver(artifactResolver, localRepositoryManagerFactory, resolutionThreads, resolutionRetries,
+                artifactCacheDirectory, artifactCacheSize * 1024 * 1024, getLog());
 
-                getLog().info("Using temporary local repository @ " + tempRepo.getAbsolutePath());
-                tempSession.setLocalRepositoryManager(localRepositoryManagerFactory.newInstance(tempSession, new LocalRepository(tempRepo)));
-            } catch (Exception ex) {
-                getLog().warn("Failed to disable local repository path.", ex);
+        // The build extension may already be prefetching the artifacts of the whole reactor.
+        PromotionBatch batch = PromotionBatch.find(session, sourceRepository, disableLocal);
+        if (batch == null && batchPromotion && reactorProjects.size() > 1) {
+            List<CatalogResolver.Module> modules = new ArrayList<CatalogResolver.Module>(reactorProjects.size());
+            for (MavenProject reactorProject : reactorProjects) {
+                modules.add(new CatalogResolver.Module(reactorProject, new File(reactorProject.getBuild().getDirectory())));
             }
+            batch = PromotionBatch.obtain(resolver, session, sourceRepository, disableLocal, modules, remoteRepositories, getLog());
         }
 
-        List<ArtifactRequest> requiredArtifacts = new ArrayList<ArtifactRequest>();
-
-        // Locate our text catalog classifier file. :-)
-        BufferedReader reader = null;
-        try {
-            ArtifactResult catalogResult = artifactResolver.resolveArtifact(tempSession, new ArtifactRequest(new DefaultArtifact(project.getGroupId(), project.getArtifactId(), "catalog", "txt", project.getVersion()), remoteRepositories, null));
-            resolvedArtifacts.add(catalogResult);
-
-            if (catalogResult.isResolved()) {
-                // Read the file line by line...
-                reader = new BufferedReader(new InputStreamReader(new FileInputStream(catalogResult.getArtifact().getFile()), Charset.forName("UTF-8")));
-
-                String coords = null;
-                while ((coords = reader.readLine()) != null) {
-                    if (!coords.trim().isEmpty()) {
-                        // And add a new ArtifactRequest
-                        requiredArtifacts.add(new ArtifactRequest(new DefaultArtifact(coords.trim()), remoteRepositories, null));
-                    }
-                }
+        if (batch != null) {
+            try {
+                getLog().info("Attaching artifacts resolved for the reactor from: " + sourceRepository);
+                attachResolvedArtifacts(batch.await(project.getId()).getResults(), strategy);
+            } finally {
+                batch.release(project.getId(), getLog());
             }
-        } catch (ArtifactResolutionException are) {
-            throw new MojoExecutionException("Could not locate artifact catalog in remote repository.", are);
-        } catch (IOException ioe) {
-            throw new MojoExecutionException("Could not read artifact catalog", ioe);
-        } finally {
-            if (reader != null) {
-                try {
-                    reader.close();
-                } catch (IOException ioe) {
-                }
+        } else {
+            // Attach each artifact as soon as it resolves, while the rest are still transferring.
+            final long start = System.currentTimeMillis();
+            final long[] firstAttached = {-1};
+            final int[] attached = {0};
+            final String projectArtifactCoordinates = getCoordinates(project.getArtifact());
+            getLog().debug("Current Project Coordinates: " + projectArtifactCoordinates);
+
+            CatalogResolver.Resolution resolution = resolver.open(session, disableLocal);
+            try {
+                resolver.stream(resolution, new CatalogResolver.Module(project, buildDirectory), remoteRepositories, sourceRepository,
+                        new CatalogResolver.Sink() {
+                            @Override
+                            public void accept(ArtifactResult result) throws MojoExecutionException {
+                                attachResolvedArtifact(result, strategy, projectArtifactCoordinates);
+                                if (attached[0]++ == 0) {
+                                    firstAttached[0] = System.currentTimeMillis() - start;
+                                }
+                            }
+                        });
+            } finally {
+                resolution.close(getLog());
             }
+            getLog().info("Attached " + attached[0] + " artifacts in " + (System.currentTimeMillis() - start) + " ms (first attached after " + firstAttached[0] + " ms).");
         }
+    }
 
-
-        // Resolve the artifacts from the catalog (if there are any)
-        try {
-            resolvedArtifacts.addAll(artifactResolver.resolveArtifacts(tempSession, requiredArtifacts));
-        } catch (ArtifactResolutionException are) {
-            throw new MojoExecutionException("Failed to resolve the required project files from: " + sourceRepository, are);
-        }
-
+    /**
+     * Places resolved artifacts into the build directory, and attaches them to the project.
+     */
+    private void attachResolvedArtifacts(final List<ArtifactResult> resolvedArtifacts, final AttachStrategy strategy) throws MojoExecutionException {
         // Get the current build artifact coordindates, so that we replace rather than re-attach.
         String projectArtifactCoordinates = getCoordinates(project.getArtifact());
         getLog().debug("Current Project Coordinates: " + projectArtifactCoordinates);
 
-        // For each artifactResult, copy it to the build directory,
-        // update the resolved artifact data to point to the new file.
-        // Then either set the project artifact to point to the file in the build directory, or attach the artifact.
         for (ArtifactResult artifactResult : resolvedArtifacts) {
-            try {
-                FileUtils.copyFileToDirectory(artifactResult.getArtifact().getFile(), buildDirectory);
-                artifactResult.setArtifact(artifactResult.getArtifact().setFile(new File(buildDirectory, artifactResult.getArtifact().getFile().getName())));
-
-                if (getCoordinates(artifactResult).equals(projectArtifactCoordinates)) {
-                    getLog().debug("    Setting primary artifact: " + artifactResult.getArtifact().getFile());
-                    project.getArtifact().setFile(artifactResult.getArtifact().getFile());
-                } else {
-                    getLog().debug("    Attaching artifact: " + getCoordinates(artifactResult) + " " + artifactResult.getArtifact().getFile());
-                    projectHelper.attachArtifact(project, artifactResult.getArtifact().getExtension(), artifactResult.getArtifact().getClassifier(), artifactResult.getArtifact().getFile());
-                }
-            } catch (IOException ioe) {
-                throw new MojoExecutionException("Failed to copy resolved artifact to target directory.", ioe);
-            }
+            attachResolvedArtifact(artifactResult, strategy, projectArtifactCoordinates);
         }
+    }
 
-        // Restore the local repository, again using reflection.
-        if (disableLocal) {
-            if (tempRepo != null) {
-                try {
-                    FileUtils.deleteDirectory(tempRepo);
-                } catch (IOException e) {
-                    getLog().warn("Failed to cleanup temporary repository directory: " + tempRepo);
-                }
+    /**
+     * Copies a resolved artifact to the build directory, and updates the resolved artifact data to point to the new
+     * file. Then either sets the project artifact to point to the file in the build directory, or attaches the artifact.
+     */
+    private void attachResolvedArtifact(final ArtifactResult artifactResult, final AttachStrategy strategy, final String projectArtifactCoordinates) throws MojoExecutionException {
+        try {
+            File source = artifactResult.getArtifact().getFile();
+            File target = new File(buildDirectory, source.getName());
+            AttachStrategy used = strategy.attach(source, target);
+            getLog().debug("    Placed " + target + " in the build directory using: " + used);
+            artifactResult.setArtifact(artifactResult.getArtifact().setFile(target));
+
+            if (getCoordinates(artifactResult).equals(projectArtifactCoordinates)) {
+                getLog().debug("    Setting primary artifact: " + artifactResult.getArtifact().getFile());
+                project.getArtifact().setFile(artifactResult.getArtifact().getFile());
+            } else {
+                getLog().debug("    Attaching artifact: " + getCoordinates(artifactResult) + " " + artifactResult.getArtifact().getFile());
+                projectHelper.attachArtifact(project, artifactResult.getArtifact().getExtension(), artifactResult.getArtifact().getClassifier(), artifactResult.getArtifact().getFile());
             }
+        } catch (IOException ioe) {
+            throw new MojoExecutionException("Failed to copy resolved artifact to target directory.", ioe);
         }
     }
 
-    private ArtifactRepositoryLayout getLayout(final String id) throws MojoExecutionException {
-        ArtifactRepositoryLayout layout = repositoryLayouts.get(id);
-        if (layout == null) {
-            throw new MojoExecutionException("Invalid repository layout: " + id);
-        }
-
-        return layout;
+    private DeploymentRepositories getDeploymentRepositories() {
+        return new DeploymentRepositories(repositoryFactory, repositoryLayouts, session, getLog());
     }
 
 }
@@ -1,6 +1,6 @@
 package com.e_gineering.maven.gitflowhelper;
 
-import com.e_gineering.maven.gitflowhelper.properties.ExpansionBuffer;
+import com.e_gineering.maven.gitflowhelper.properties.EnvironmentProperties;
 import com.e_gineering.maven.gitflowhelper.properties.PropertyResolver;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -9,9 +9,8 @@ import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.scm.manager.ScmManager;
-import org.codehaus.plexus.util.cli.CommandLineUtils;
+import org.eclipse.aether.RepositorySystemSession;
 
-import java.io.IOException;
 import java.util.Properties;
 
 /**
@@ -19,10 +18,12 @@ import java.util.Properties;
  */
 public abstract class AbstractGitflowBranchMojo extends AbstractMojo {
 
-    private Properties systemEnvVars = new Properties();
+    private final Properties systemEnvVars = EnvironmentProperties.getInstance();
 
     private PropertyResolver resolver = new PropertyResolver();
 
+    private GitflowContext context;
+
 
     @Component
     protected MavenProject project;
@@ -30,6 +31,9 @@ public abstract class AbstractGitflowBranchMojo extends AbstractMojo {
     @Component
     protected ScmManager scmManager;
 
+    @Parameter(defaultValue = "${repositorySystemSession}", required = true)
+    protected RepositorySystemSession session;
+
     @Parameter(defaultValue = "(origin/)?master", property = "masterBranchPattern", required = true)
     private String masterBranchPattern;
 
@@ -45,7 +49,7 @@ public abstract class AbstractGitflowBranchMojo extends AbstractMojo {
     @Parameter(defaultValue = "(origin/)?develop", property = "developmentBranchPattern", required = true)
     private String developmentBranchPattern;
 
-    // @Parameter tag causes property resolution to fail for patterns containing ${env.}. Default provided in execute();
+    // @Parameter tag causes property resolution to fail for patterns containing ${env.}. Default provided by GitflowContext.
     @Parameter(property = "gitBranchExpression", required = false)
     private String gitBranchExpression;
 
@@ -58,7 +62,25 @@ public abstract class AbstractGitflowBranchMojo extends AbstractMojo {
      * @return
      */
     protected String resolveExpression(final String expression) {
-        return resolver.resolveValue(expression, project.getProperties(), systemEnvVars);
+        return resolveExpression(expression, project.getProperties());
+    }
+
+    /**
+     * Method exposing Property Resolving against a specific set of properties for subclasses.
+     *
+     * @param expression
+     * @param properties
+     * @return
+     */
+    protected String resolveExpression(final String expression, final Properties properties) {
+        return resolver.resolveValue(expression, properties, systemEnvVars);
+    }
+
+    /**
+     * @return The gitflow context of the current execution, including the capture groups of the matched branch pattern.
+     */
+    protected GitflowContext getGitflowContext() {
+        return context;
     }
 
     private void logExecute(final GitBranchType type, final String gitBranch, final String branchPattern) throws MojoExecutionException, MojoFailureException {
@@ -67,46 +89,14 @@ public abstract class AbstractGitflowBranchMojo extends AbstractMojo {
     }
 
     public void execute() throws MojoExecutionException, MojoFailureException {
-        if (gitBranchExpression == null) {
-            gitBranchExpression = ScmUtils.resolveBranchOrExpression(scmManager, project, getLog());
-        }
+        context = GitflowContext.obtain(session, project, scmManager, getLog(), gitBranchExpression, masterBranchPattern,
+                supportBranchPattern, releaseBranchPattern, hotfixBranchPattern, developmentBranchPattern);
 
-        try {
-            systemEnvVars = CommandLineUtils.getSystemEnvVars();
-        } catch (IOException ioe) {
-            throw new MojoExecutionException("Unable to read System Envirionment Variables: ", ioe);
+        String gitBranch = context.getGitBranch();
+        if (!context.getGitBranchExpression().equals(gitBranch) || getLog().isDebugEnabled()) { // Resolves Issue #9
+            getLog().debug("Resolved gitBranchExpression: '" + context.getGitBranchExpression() + " to '" + gitBranch + "'");
         }
 
-        // Try to resolve the gitBranchExpression to an actual Value...
-        String gitBranch = resolveExpression(gitBranchExpression);
-        ExpansionBuffer eb = new ExpansionBuffer(gitBranch);
-
-        if (!gitBranchExpression.equals(gitBranch) || getLog().isDebugEnabled()) { // Resolves Issue #9
-            getLog().debug("Resolved gitBranchExpression: '" + gitBranchExpression + " to '" + gitBranch + "'");
-        }
-
-        if (!eb.hasMoreLegalPlaceholders()) {
-            /*
-             * (/origin/)?master goes to the maven 'release' repo.
-             * (/origin/)?release/(.*) , (/origin/)?hotfix/(.*) , and (/origin/)?bugfix/(.*) go to the maven 'stage' repo.
-             * (/origin/)?develop goes to the 'snapshot' repo.
-             * All other builds will use the default semantics for 'deploy'.
-             */
-            if (gitBranch.matches(masterBranchPattern)) {
-                logExecute(GitBranchType.MASTER, gitBranch, masterBranchPattern);
-            } else if (gitBranch.matches(supportBranchPattern)) {
-                logExecute(GitBranchType.SUPPORT, gitBranch, supportBranchPattern);
-            } else if (gitBranch.matches(releaseBranchPattern)) {
-                logExecute(GitBranchType.RELEASE, gitBranch, releaseBranchPattern);
-            } else if (gitBranch.matches(hotfixBranchPattern)) {
-                logExecute(GitBranchType.HOTFIX, gitBranch, hotfixBranchPattern);
-            } else if (gitBranch.matches(developmentBranchPattern)) {
-                logExecute(GitBranchType.DEVELOPMENT, gitBranch, developmentBranchPattern);
-            } else {
-                logExecute(GitBranchType.OTHER, gitBranch, null);
-            }
-        } else {
-            logExecute(GitBranchType.UNDEFINED, gitBranch, null);
-        }
+        logExecute(context.getType(), gitBranch, context.getBranchPattern());
     }
 }
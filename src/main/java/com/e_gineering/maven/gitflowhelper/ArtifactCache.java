@@ -0,0 +1,266 @@
+package com.e_gineering.maven.gitflowhelper;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A persistent, content-addressed cache of artifact files, shared by builds on the same machine.
+ * <p/>
+ * Files are stored by their SHA-256 digest, and only ever added after their digest has been verified against an
+ * artifact catalog, so an entry can be trusted by digest alone. The total size of the cache is bounded: when it grows
+ * past the bound, the least recently used entries are evicted. Adding, retrieving and evicting entries hold an
+ * exclusive lock on a lock file in the cache directory, so concurrent builds (in this or other processes) can share it.
+ * Retrieved files are verified again, since entries may be hard linked elsewhere. Files left behind by stores which
+ * were interrupted are removed by eviction, once they are old enough not to belong to a store still in progress.
+ */
+class ArtifactCache {
+
+    // File locks are held per JVM, so threads of this JVM have to take turns before locking the file.
+    private static final ReentrantLock JVM_LOCK = new ReentrantLock();
+
+    private static final String LOCK_FILE = ".lock";
+
+    private static final String TEMP_PREFIX = ".incoming-";
+
+    // Incoming directories older than this belong to stores which were interrupted.
+    private static final long STALE_INCOMING_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final File directory;
+
+    private final long maxSize;
+
+    private final Log log;
+
+    /**
+     * @param directory The cache directory
+     * @param maxSize   The maximum total size of the cached files, in bytes
+     * @param log       A Log to write to
+     */
+    ArtifactCache(final File directory, final long maxSize, final Log log) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.log = log;
+    }
+
+    /**
+     * Places the cached file for the given entry at the target location.
+     *
+     * @param entry  A catalog entry with a digest
+     * @param target The file to create
+     * @return <code>true</code> if the entry was cached and placed at the target
+     */
+    boolean retrieve(final ArtifactCatalog.Entry entry, final File target) {
+        if (!entry.hasDigest()) {
+            return false;
+        }
+
+        File cached = fileFor(entry.getSha256());
+        try {
+            lock();
+            try {
+                if (!cached.isFile() || cached.length() != entry.getSize()) {
+                    return false;
+                }
+
+                target.getParentFile().mkdirs();
+                AttachStrategy.LINK.attach(cached, target);
+
+                // Mark the entry as recently used.
+                cached.setLastModified(System.currentTimeMillis());
+            } finally {
+                unlock();
+            }
+
+            // Guard against entries modified in place (ex: through a hard linked build directory file).
+            if (!entry.matches(target)) {
+                log.warn("Discarding corrupt artifact cache entry for: " + entry.getCoordinates());
+                target.delete();
+                lock();
+                try {
+                    cached.delete();
+                } finally {
+                    unlock();
+                }
+                return false;
+            }
+            return true;
+        } catch (IOException ioe) {
+            log.warn("Failed to retrieve " + entry.getCoordinates() + " from the artifact cache @ " + directory, ioe);
+            target.delete();
+            return false;
+        }
+    }
+
+    /**
+     * Adds a verified artifact file to the cache.
+     *
+     * @param entry A catalog entry with a digest, which the file has been verified against
+     * @param file  The artifact file
+     */
+    void store(final ArtifactCatalog.Entry entry, final File file) {
+        if (!entry.hasDigest()) {
+            return;
+        }
+
+        File cached = fileFor(entry.getSha256());
+        if (cached.isFile()) {
+            return;
+        }
+
+        // Copy the file in without the lock, then move it into place atomically. The file is copied into a directory of
+        // its own, as a hard linked file keeps the modification time of its source, which says nothing about its age.
+        File incoming = new File(directory, TEMP_PREFIX + UUID.randomUUID());
+        File incomingFile = new File(incoming, cached.getName());
+        try {
+            incoming.mkdirs();
+            AttachStrategy.LINK.attach(file, incomingFile);
+
+            lock();
+            try {
+                cached.getParentFile().mkdirs();
+                if (!cached.isFile()) {
+                    Files.move(incomingFile.toPath(), cached.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                }
+            } finally {
+                unlock();
+            }
+        } catch (IOException ioe) {
+            log.warn("Failed to store " + entry.getCoordinates() + " in the artifact cache @ " + directory, ioe);
+        } finally {
+            incomingFile.delete();
+            incoming.delete();
+        }
+    }
+
+    /**
+     * Evicts the least recently used entries until the cache fits within its maximum size, and removes files left
+     * behind by interrupted stores.
+     */
+    void evict() {
+        try {
+            lock();
+            try {
+                List<File> entries = new ArrayList<File>();
+                long size = 0;
+                File[] buckets = directory.listFiles();
+                if (buckets == null) {
+                    return;
+                }
+                long staleBefore = System.currentTimeMillis() - STALE_INCOMING_MILLIS;
+                for (File bucket : buckets) {
+                    if (bucket.getName().startsWith(TEMP_PREFIX)) {
+                        if (bucket.lastModified() < staleBefore) {
+                            log.debug("Deleting " + bucket + " left behind by an interrupted store to the artifact cache.");
+                            try {
+                                FileUtils.forceDelete(bucket);
+                            } catch (IOException ioe) {
+                                log.debug("Failed to delete " + bucket + " from the artifact cache.");
+                            }
+                        }
+                        continue;
+                    }
+
+                    File[] files = bucket.isDirectory() ? bucket.listFiles() : null;
+                    if (files != null) {
+                        for (File file : files) {
+                            entries.add(file);
+                            size += file.length();
+                        }
+                    }
+                }
+
+                if (size <= maxSize) {
+                    return;
+                }
+
+                Collections.sort(entries, new Comparator<File>() {
+                    @Override
+                    public int compare(File a, File b) {
+                        long difference = a.lastModified() - b.lastModified();
+                        return difference < 0 ? -1 : difference > 0 ? 1 : 0;
+                    }
+                });
+
+                for (int i = 0; i < entries.size() && size > maxSize; i++) {
+                    long length = entries.get(i).length();
+                    if (entries.get(i).delete()) {
+                        log.debug("Evicted " + entries.get(i) + " from the artifact cache.");
+                        size -= length;
+                    }
+                }
+            } finally {
+                unlock();
+            }
+        } catch (IOException ioe) {
+            log.warn("Failed to evict entries from the artifact cache @ " + directory, ioe);
+        }
+    }
+
+    private File fileFor(final String sha256) {
+        String digest = sha256.toLowerCase();
+        return new File(new File(directory, digest.substring(0, 2)), digest);
+    }
+
+    // The lock currently held by this JVM, guarded by JVM_LOCK.
+    private static RandomAccessFile lockFile;
+    private static FileLock fileLock;
+
+    private void lock() throws IOException {
+        JVM_LOCK.lock();
+        if (JVM_LOCK.getHoldCount() > 1) {
+            return;
+        }
+
+        try {
+            FileUtils.mkdir(directory.getAbsolutePath());
+            lockFile = new RandomAccessFile(new File(directory, LOCK_FILE), "rw");
+            FileChannel channel = lockFile.getChannel();
+            fileLock = channel.lock();
+        } catch (IOException ioe) {
+            closeLockFile();
+            JVM_LOCK.unlock();
+            throw ioe;
+        }
+    }
+
+    private void unlock() {
+        try {
+            if (JVM_LOCK.getHoldCount() == 1) {
+                closeLockFile();
+            }
+        } finally {
+            JVM_LOCK.unlock();
+        }
+    }
+
+    private static void closeLockFile() {
+        try {
+            if (fileLock != null) {
+                fileLock.release();
+            }
+            if (lockFile != null) {
+                lockFile.close();
+            }
+        } catch (IOException ioe) {
+            // Closing the file releases the lock regardless.
+        } finally {
+            fileLock = null;
+            lockFile = null;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.e_gineering.maven.gitflowhelper;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The catalog of artifacts attached to a build, used to re-resolve and re-attach them from a repository later.
+ * <p/>
+ * Version 1 catalogs list one <code>group:artifact:extension[:classifier]:version</code> coordinate per line.
+ * Version 2 catalogs start with a <code>#</code> header line, and follow each coordinate with the size and SHA-256
+ * digest of the artifact file, separated by tabs, so consumers can verify downloads and skip artifacts they already
+ * have. Lines starting with <code>#</code> are ignored when reading either version.
+ */
+final class ArtifactCatalog {
+
+    private static final String HEADER = "# gitflow-helper-maven-plugin artifact catalog v";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final List<Entry> entries;
+
+    ArtifactCatalog(final List<Entry> entries) {
+        this.entries = Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * @return The catalogued artifacts, in catalog order
+     */
+    List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Reads a catalog of either version.
+     *
+     * @param file The catalog file
+     * @return The catalog
+     * @throws IOException If the catalog can not be read
+     */
+    static ArtifactCatalog read(final File file) throws IOException {
+        List<Entry> entries = new ArrayList<Entry>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF_8));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                String[] fields = line.split("\\s+");
+                if (fields.length >= 3) {
+                    entries.add(new Entry(fields[0], Long.parseLong(fields[1]), fields[2]));
+                } else {
+                    entries.add(new Entry(fields[0], -1, null));
+                }
+            }
+        } catch (NumberFormatException nfe) {
+            throw new IOException("Malformed artifact catalog: " + file, nfe);
+        } finally {
+            reader.close();
+        }
+        return new ArtifactCatalog(entries);
+    }
+
+    /**
+     * Writes the catalog.
+     *
+     * @param writer  The writer to write to
+     * @param version The catalog version to write. Version 1 omits the header, sizes and digests.
+     */
+    void write(final PrintWriter writer, final int version) {
+        if (version >= 2) {
+            writer.println(HEADER + version);
+        }
+        for (Entry entry : entries) {
+            if (version >= 2 && entry.hasDigest()) {
+                writer.println(entry.getCoordinates() + "\t" + entry.getSize() + "\t" + entry.getSha256());
+            } else {
+                writer.println(entry.getCoordinates());
+            }
+        }
+    }
+
+    /**
+     * Computes the hex encoded SHA-256 digest of a file.
+     */
+    static String sha256(final File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new IllegalStateException("SHA-256 is not supported by this JVM.", nsae);
+        }
+
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+
+        byte[] hash = digest.digest();
+        char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[i * 2] = HEX[(hash[i] >> 4) & 0xF];
+            hex[i * 2 + 1] = HEX[hash[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * A single catalogued artifact.
+     */
+    static final class Entry {
+        private final String coordinates;
+        private final long size;
+        private final String sha256;
+
+        /**
+         * @param coordinates The artifact coordinates
+         * @param size        The size of the artifact file, or -1 if unknown
+         * @param sha256      The SHA-256 digest of the artifact file, or <code>null</code> if unknown
+         */
+        Entry(final String coordinates, final long size, final String sha256) {
+            this.coordinates = coordinates;
+            this.size = size;
+            this.sha256 = sha256;
+        }
+
+        /**
+         * Creates an entry describing the given artifact file.
+         */
+        static Entry of(final String coordinates, final File file) throws IOException {
+            if (file == null || !file.isFile()) {
+                return new Entry(coordinates, -1, null);
+            }
+            return new Entry(coordinates, file.length(), sha256(file));
+        }
+
+        /**
+         * Creates an entry describing the given artifact file, for a catalog of the given version. Only version 2
+         * catalogs record sizes and digests, so the file is only read for those.
+         */
+        static Entry of(final String coordinates, final File file, final int version) throws IOException {
+            return version >= 2 ? of(coordinates, file) : new Entry(coordinates, -1, null);
+        }
+
+        String getCoordinates() {
+            return coordinates;
+        }
+
+        long getSize() {
+            return size;
+        }
+
+        String getSha256() {
+            return sha256;
+        }
+
+        boolean hasDigest() {
+            return size >= 0 && sha256 != null;
+        }
+
+        /**
+         * @return <code>true</code> if the entry has a digest, and the given file has the same size and digest.
+         */
+        boolean matches(final File file) throws IOException {
+            return hasDigest() && file != null && file.isFile() && file.length() == size && sha256.equalsIgnoreCase(sha256(file));
+        }
+    }
+}
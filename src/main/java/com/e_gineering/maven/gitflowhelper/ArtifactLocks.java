@@ -0,0 +1,92 @@
+package com.e_gineering.maven.gitflowhelper;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Striped locks on artifact coordinates, held across processes through file locks.
+ * <p/>
+ * Coordinates are hashed onto a fixed number of lock files, so work on different artifacts can usually proceed in
+ * parallel, while work on the same artifact (by this or any other build using the same lock directory) is serialized.
+ */
+final class ArtifactLocks {
+
+    private static final int STRIPES = 64;
+
+    // File locks are held per JVM, so threads of this JVM have to take turns before locking a file.
+    private static final ConcurrentMap<String, ReentrantLock> JVM_LOCKS = new ConcurrentHashMap<String, ReentrantLock>();
+
+    private final File directory;
+
+    /**
+     * @param directory The directory to keep the lock files in
+     */
+    ArtifactLocks(final File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Locks the stripe of the given coordinates, waiting for other threads and processes holding it.
+     *
+     * @param coordinates The artifact coordinates
+     * @return The held lock, which must be released
+     * @throws IOException If the lock file can not be locked
+     */
+    Held lock(final String coordinates) throws IOException {
+        File file = new File(directory, "stripe-" + ((coordinates.hashCode() & Integer.MAX_VALUE) % STRIPES) + ".lock");
+
+        ReentrantLock jvmLock = JVM_LOCKS.get(file.getAbsolutePath());
+        if (jvmLock == null) {
+            ReentrantLock created = new ReentrantLock();
+            jvmLock = JVM_LOCKS.putIfAbsent(file.getAbsolutePath(), created);
+            if (jvmLock == null) {
+                jvmLock = created;
+            }
+        }
+
+        jvmLock.lock();
+        RandomAccessFile lockFile = null;
+        try {
+            directory.mkdirs();
+            lockFile = new RandomAccessFile(file, "rw");
+            return new Held(jvmLock, lockFile, lockFile.getChannel().lock());
+        } catch (IOException ioe) {
+            if (lockFile != null) {
+                lockFile.close();
+            }
+            jvmLock.unlock();
+            throw ioe;
+        }
+    }
+
+    /**
+     * A held stripe lock.
+     */
+    static final class Held {
+        private final ReentrantLock jvmLock;
+        private final RandomAccessFile lockFile;
+        private final FileLock fileLock;
+
+        private Held(final ReentrantLock jvmLock, final RandomAccessFile lockFile, final FileLock fileLock) {
+            this.jvmLock = jvmLock;
+            this.lockFile = lockFile;
+            this.fileLock = fileLock;
+        }
+
+        void release() {
+            try {
+                fileLock.release();
+                lockFile.close();
+            } catch (IOException ioe) {
+                // Closing the file releases the lock regardless.
+            } finally {
+                jvmLock.unlock();
+            }
+        }
+    }
+}
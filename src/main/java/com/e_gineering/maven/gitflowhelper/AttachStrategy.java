@@ -0,0 +1,201 @@
+package com.e_gineering.maven.gitflowhelper;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.Os;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ways of placing a resolved artifact file into the build directory, from cheapest to most expensive.
+ * <p/>
+ * Each strategy falls back to the next one when it isn't possible (ex: hard links across file systems, or reflinks on
+ * file systems without copy-on-write support), ending with a plain buffered copy which always works. REFLINK forks a
+ * <code>cp</code> process per file, so it is only used when asked for, never as a fallback.
+ * <p/>
+ * Files are always attached to a new temporary file next to the target, which is then renamed over the target. An
+ * existing target may be a hard link to a file in a repository, so it is never written to.
+ */
+enum AttachStrategy {
+    /**
+     * Hard link the file, sharing the data on disk. Only possible within a single file system.
+     */
+    LINK,
+
+    /**
+     * Clone the file on a copy-on-write file system (btrfs, xfs, zfs, apfs...) with <code>cp</code>. Only used when
+     * asked for explicitly.
+     */
+    REFLINK,
+
+    /**
+     * Copy the file in the kernel, using <code>FileChannel.transferTo</code>.
+     */
+    TRANSFER,
+
+    /**
+     * Copy the file through a buffer.
+     */
+    COPY;
+
+    // How long to wait for cp to clone a file.
+    private static final long REFLINK_TIMEOUT_SECONDS = 60;
+
+    /**
+     * Parses a strategy name, <code>auto</code> meaning the cheapest strategy (LINK).
+     *
+     * @param name The name of the strategy, case insensitive
+     * @return The strategy
+     * @throws IllegalArgumentException if the name is not a strategy
+     */
+    static AttachStrategy fromName(final String name) {
+        if ("auto".equalsIgnoreCase(name.trim())) {
+            return LINK;
+        }
+        return valueOf(name.trim().toUpperCase());
+    }
+
+    /**
+     * Places the source file at the target location using this strategy, or the next cheapest one possible.
+     *
+     * @param source The resolved artifact file
+     * @param target The file to create. Replaced (never overwritten) if it already exists.
+     * @return The strategy which was actually used
+     * @throws IOException If the file could not even be copied
+     */
+    AttachStrategy attach(final File source, final File target) throws IOException {
+        if (source.getCanonicalFile().equals(target.getCanonicalFile())) {
+            return this;
+        }
+
+        target.getParentFile().mkdirs();
+        File temp = new File(target.getParentFile(), "." + target.getName() + ".attaching-" + UUID.randomUUID());
+        try {
+            AttachStrategy strategy = this;
+            while (!strategy.tryAttach(source, temp)) {
+                strategy = strategy.fallback();
+            }
+
+            try {
+                Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException amnse) {
+                Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return strategy;
+        } finally {
+            temp.delete();
+        }
+    }
+
+    /**
+     * @return The strategy to try next when this one isn't possible.
+     */
+    private AttachStrategy fallback() {
+        // Hard links fail fast across file systems, don't fork a cp for every file that follows.
+        return this == LINK ? TRANSFER : values()[ordinal() + 1];
+    }
+
+    private boolean tryAttach(final File source, final File target) throws IOException {
+        switch (this) {
+            case LINK: {
+                try {
+                    Files.createLink(target.toPath(), source.toPath());
+                    return true;
+                } catch (IOException ioe) {
+                    return false;
+                } catch (UnsupportedOperationException uoe) {
+                    return false;
+                }
+            }
+            case REFLINK: {
+                return reflink(source, target);
+            }
+            case TRANSFER: {
+                try {
+                    transfer(source, target);
+                    return true;
+                } catch (IOException ioe) {
+                    target.delete();
+                    return false;
+                }
+            }
+            default: {
+                FileUtils.copyFile(source, target);
+                return true;
+            }
+        }
+    }
+
+    private static boolean reflink(final File source, final File target) {
+        String cloneFlag;
+        if (Os.isFamily(Os.FAMILY_MAC)) {
+            cloneFlag = "-c";
+        } else if (Os.isFamily(Os.FAMILY_UNIX)) {
+            cloneFlag = "--reflink=always";
+        } else {
+            return false;
+        }
+
+        try {
+            Process cp = new ProcessBuilder("cp", cloneFlag, source.getAbsolutePath(), target.getAbsolutePath())
+                    .redirectErrorStream(true).start();
+            cp.getOutputStream().close();
+            if (!waitFor(cp) || cp.exitValue() != 0) {
+                target.delete();
+                return false;
+            }
+            return true;
+        } catch (IOException ioe) {
+            return false;
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            target.delete();
+            return false;
+        }
+    }
+
+    private static boolean waitFor(final Process process) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(REFLINK_TIMEOUT_SECONDS);
+        while (true) {
+            try {
+                process.exitValue();
+                return true;
+            } catch (IllegalThreadStateException stillRunning) {
+                if (System.nanoTime() > deadline) {
+                    process.destroy();
+                    return false;
+                }
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    private static void transfer(final File source, final File target) throws IOException {
+        FileInputStream in = new FileInputStream(source);
+        try {
+            FileOutputStream out = new FileOutputStream(target);
+            try {
+                FileChannel from = in.getChannel();
+                FileChannel to = out.getChannel();
+                long size = from.size();
+                long position = 0;
+                while (position < size) {
+                    position += from.transferTo(position, size - position, to);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+        target.setLastModified(source.lastModified());
+    }
+}
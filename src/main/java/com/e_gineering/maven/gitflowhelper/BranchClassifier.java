@@ -0,0 +1,160 @@
+package com.e_gineering.maven.gitflowhelper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Classifies git branch names into {@link GitBranchType}s using the configured master, support, release, hotfix and
+ * development branch patterns.
+ * <p/>
+ * The patterns are compiled once per distinct pattern set into a single alternation, so a branch is classified in one
+ * matching pass while retaining the capture groups of the pattern which matched. Classifiers are cached and shared
+ * by the build extension and every mojo.
+ */
+public final class BranchClassifier {
+
+    private static final GitBranchType[] TYPES = {GitBranchType.MASTER, GitBranchType.SUPPORT, GitBranchType.RELEASE, GitBranchType.HOTFIX, GitBranchType.DEVELOPMENT};
+
+    // Back references are numbered, so they can't be combined into a single alternation without renumbering.
+    private static final Pattern BACK_REFERENCE = Pattern.compile("\\\\([1-9]|k<)");
+
+    private static final ConcurrentMap<List<String>, BranchClassifier> CLASSIFIERS = new ConcurrentHashMap<List<String>, BranchClassifier>();
+
+    private final String[] patterns;
+
+    private final Pattern[] compiled;
+
+    // The combined alternation, or null if the patterns couldn't be combined.
+    private final Pattern combined;
+
+    // Group index (in the combined pattern) of the wrapping group for each pattern.
+    private final int[] offsets;
+
+    private BranchClassifier(final String[] patterns) {
+        this.patterns = patterns;
+        this.compiled = new Pattern[patterns.length];
+        this.offsets = new int[patterns.length];
+
+        StringBuilder alternation = new StringBuilder();
+        boolean combinable = true;
+        int group = 1;
+        for (int i = 0; i < patterns.length; i++) {
+            compiled[i] = Pattern.compile(patterns[i]);
+            combinable &= !BACK_REFERENCE.matcher(patterns[i]).find();
+
+            if (i > 0) {
+                alternation.append('|');
+            }
+            alternation.append('(').append(patterns[i]).append(')');
+            offsets[i] = group;
+            group += compiled[i].matcher("").groupCount() + 1;
+        }
+
+        Pattern pattern = null;
+        if (combinable) {
+            try {
+                pattern = Pattern.compile(alternation.toString());
+            } catch (PatternSyntaxException pse) {
+                pattern = null;
+            }
+        }
+        this.combined = pattern;
+    }
+
+    /**
+     * Returns the (shared) classifier for the given pattern set.
+     */
+    public static BranchClassifier getInstance(final String masterBranchPattern, final String supportBranchPattern, final String releaseBranchPattern,
+                                               final String hotfixBranchPattern, final String developmentBranchPattern) {
+        String[] patterns = {masterBranchPattern, supportBranchPattern, releaseBranchPattern, hotfixBranchPattern, developmentBranchPattern};
+        List<String> key = Arrays.asList(patterns);
+
+        BranchClassifier classifier = CLASSIFIERS.get(key);
+        if (classifier == null) {
+            CLASSIFIERS.putIfAbsent(key, new BranchClassifier(patterns));
+            classifier = CLASSIFIERS.get(key);
+        }
+        return classifier;
+    }
+
+    /**
+     * Classifies the given (fully resolved) branch name. Patterns are tested in master, support, release, hotfix,
+     * development order, the first one matching wins.
+     *
+     * @param gitBranch The resolved git branch
+     * @return The classification. Branches matching no pattern are of type OTHER.
+     */
+    public Classification classify(final String gitBranch) {
+        if (combined != null) {
+            Matcher matcher = combined.matcher(gitBranch);
+            if (matcher.matches()) {
+                for (int i = 0; i < offsets.length; i++) {
+                    if (matcher.start(offsets[i]) != -1) {
+                        int last = i + 1 < offsets.length ? offsets[i + 1] : matcher.groupCount() + 1;
+                        List<String> groups = new ArrayList<String>(last - offsets[i] - 1);
+                        for (int g = offsets[i] + 1; g < last; g++) {
+                            groups.add(matcher.group(g));
+                        }
+                        return new Classification(TYPES[i], patterns[i], groups);
+                    }
+                }
+            }
+        } else {
+            for (int i = 0; i < compiled.length; i++) {
+                Matcher matcher = compiled[i].matcher(gitBranch);
+                if (matcher.matches()) {
+                    List<String> groups = new ArrayList<String>(matcher.groupCount());
+                    for (int g = 1; g <= matcher.groupCount(); g++) {
+                        groups.add(matcher.group(g));
+                    }
+                    return new Classification(TYPES[i], patterns[i], groups);
+                }
+            }
+        }
+
+        return new Classification(GitBranchType.OTHER, null, Collections.<String>emptyList());
+    }
+
+    /**
+     * The result of classifying a branch.
+     */
+    public static final class Classification {
+        private final GitBranchType type;
+        private final String branchPattern;
+        private final List<String> groups;
+
+        private Classification(final GitBranchType type, final String branchPattern, final List<String> groups) {
+            this.type = type;
+            this.branchPattern = branchPattern;
+            this.groups = Collections.unmodifiableList(groups);
+        }
+
+        /**
+         * @return The type of branch
+         */
+        public GitBranchType getType() {
+            return type;
+        }
+
+        /**
+         * @return The pattern which matched, or <code>null</code> if none did
+         */
+        public String getBranchPattern() {
+            return branchPattern;
+        }
+
+        /**
+         * @return The capture groups of the matching pattern (group 1 first)
+         */
+        public List<String> getGroups() {
+            return groups;
+        }
+    }
+}
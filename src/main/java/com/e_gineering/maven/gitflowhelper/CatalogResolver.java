@@ -0,0 +1,430 @@
+package com.e_gineering.maven.gitflowhelper;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.impl.ArtifactResolver;
+import org.eclipse.aether.internal.impl.EnhancedLocalRepositoryManagerFactory;
+import org.eclipse.aether.repository.LocalRepository;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.repository.RepositoryPolicy;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+import org.eclipse.aether.resolution.ArtifactResult;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resolves the artifact catalogs of one or more modules, and then the artifacts they list.
+ * <p/>
+ * All modules are resolved together: first every catalog, then every catalogued artifact, each as a single batch.
+ * A failure only affects the module it belongs to, and is reported when that module's results are requested.
+ */
+final class CatalogResolver {
+
+    private final ArtifactResolver artifactResolver;
+
+    private final EnhancedLocalRepositoryManagerFactory localRepositoryManagerFactory;
+
+    private final int threads;
+
+    private final int retries;
+
+    private final File cacheDirectory;
+
+    private final long cacheSize;
+
+    private final Log log;
+
+    /**
+     * @param artifactResolver              The resolver to resolve artifacts with
+     * @param localRepositoryManagerFactory Creates the temporary local repository when the local repository is disabled
+     * @param threads                       The number of artifacts to resolve concurrently
+     * @param retries                       The number of times to retry an artifact which fails to resolve
+     * @param cacheDirectory                The persistent artifact cache directory, or <code>null</code> for none
+     * @param cacheSize                     The maximum size of the artifact cache, in bytes
+     * @param log                           A Log to write to
+     */
+    CatalogResolver(final ArtifactResolver artifactResolver, final EnhancedLocalRepositoryManagerFactory localRepositoryManagerFactory,
+                    final int threads, final int retries, final File cacheDirectory, final long cacheSize, final Log log) {
+        this.artifactResolver = artifactResolver;
+        this.localRepositoryManagerFactory = localRepositoryManagerFactory;
+        this.threads = threads;
+        this.retries = retries;
+        this.cacheDirectory = cacheDirectory;
+        this.cacheSize = cacheSize;
+        this.log = log;
+    }
+
+    /**
+     * Creates a repository session to resolve within, setup to force a few behaviors we like.
+     *
+     * @param session      The current repository session
+     * @param disableLocal Whether to resolve into a temporary local repository instead of the current one
+     * @return The resolution, which must be closed once its files have been attached
+     */
+    Resolution open(final RepositorySystemSession session, final boolean disableLocal) {
+        DefaultRepositorySystemSession tempSession = new DefaultRepositorySystemSession(session);
+        tempSession.setUpdatePolicy(RepositoryPolicy.UPDATE_POLICY_ALWAYS);
+
+        File tempRepo = null;
+        if (disableLocal) {
+            log.info("Disabling local repository @ " + tempSession.getLocalRepository().getBasedir());
+            try {
+                tempRepo = TempRepositoryCleaner.of(session).create(log);
+
+                log.info("Using temporary local repository @ " + tempRepo.getAbsolutePath());
+                tempSession.setLocalRepositoryManager(localRepositoryManagerFactory.newInstance(tempSession, new LocalRepository(tempRepo)));
+            } catch (Exception ex) {
+                log.warn("Failed to disable local repository path.", ex);
+            }
+        }
+
+        // The persistent artifact cache stands in for the disabled local repository.
+        ArtifactCache cache = null;
+        if (tempRepo != null && cacheDirectory != null) {
+            log.info("Using artifact cache @ " + cacheDirectory);
+            cache = new ArtifactCache(cacheDirectory, cacheSize, log);
+        }
+
+        return new Resolution(session, tempSession, tempRepo, cache, disableLocal);
+    }
+
+    /**
+     * Resolves the catalogs and catalogued artifacts of the given modules.
+     *
+     * @param resolution         The resolution to resolve within
+     * @param modules            The modules to resolve
+     * @param remoteRepositories The repositories to resolve from
+     * @param sourceRepository   The repository description, for error messages
+     */
+    void resolve(final Resolution resolution, final List<Module> modules, final List<RemoteRepository> remoteRepositories, final String sourceRepository) {
+        // Locate our text catalog classifier files. :-)
+        List<ArtifactRequest> catalogRequests = new ArrayList<ArtifactRequest>(modules.size());
+        for (Module module : modules) {
+            catalogRequests.add(catalogRequest(module, remoteRepositories));
+        }
+
+        List<ArtifactResult> catalogResults;
+        ArtifactResolutionException catalogFailure = null;
+        try {
+            catalogResults = resolveAll(resolution.session, catalogRequests);
+        } catch (ArtifactResolutionException are) {
+            catalogResults = are.getResults();
+            catalogFailure = are;
+        }
+
+        for (int i = 0; i < modules.size(); i++) {
+            Module module = modules.get(i);
+            ArtifactResult catalogResult = catalogResults.size() == modules.size() ? catalogResults.get(i) : null;
+            if (catalogResult == null || !catalogResult.isResolved()) {
+                module.failure = new MojoExecutionException("Could not locate artifact catalog in remote repository.", catalogFailure);
+                continue;
+            }
+
+            try {
+                catalogue(resolution, module, catalogResult, remoteRepositories);
+            } catch (IOException ioe) {
+                module.failure = new MojoExecutionException("Could not read artifact catalog", ioe);
+                module.required.clear();
+            }
+        }
+
+        List<ArtifactRequest> requiredArtifacts = new ArrayList<ArtifactRequest>();
+        for (Module module : modules) {
+            for (ArtifactCatalog.Entry entry : module.required) {
+                requiredArtifacts.add(new ArtifactRequest(new DefaultArtifact(entry.getCoordinates()), remoteRepositories, null));
+            }
+        }
+
+        // Resolve the artifacts from the catalogs (if there are any)
+        List<ArtifactResult> results;
+        ArtifactResolutionException failure = null;
+        try {
+            results = resolveAll(resolution.session, requiredArtifacts);
+        } catch (ArtifactResolutionException are) {
+            results = are.getResults();
+            failure = are;
+        }
+
+        int offset = 0;
+        for (Module module : modules) {
+            List<ArtifactResult> moduleResults = results.size() == requiredArtifacts.size()
+                    ? results.subList(offset, offset + module.required.size()) : null;
+            offset += module.required.size();
+
+            if (module.required.isEmpty()) {
+                continue;
+            }
+
+            if (moduleResults == null || !allResolved(moduleResults)) {
+                module.failure = new MojoExecutionException("Failed to resolve the required project files from: " + sourceRepository, failure);
+                continue;
+            }
+
+            // Verify the transferred files against the catalog, when it has digests.
+            for (int i = 0; i < moduleResults.size() && module.failure == null; i++) {
+                ArtifactCatalog.Entry entry = module.required.get(i);
+                ArtifactResult result = moduleResults.get(i);
+                try {
+                    verify(resolution, entry, result);
+                } catch (MojoExecutionException mee) {
+                    module.failure = mee;
+                }
+            }
+            module.results.addAll(moduleResults);
+        }
+
+        if (resolution.cache != null && !requiredArtifacts.isEmpty()) {
+            resolution.cache.evict();
+        }
+    }
+
+    /**
+     * Resolves the catalog and catalogued artifacts of a single module, handing each artifact to the sink as soon as
+     * it has resolved (and been verified). Artifacts already present are handed over first, before any transfer.
+     *
+     * @param resolution         The resolution to resolve within
+     * @param module             The module to resolve
+     * @param remoteRepositories The repositories to resolve from
+     * @param sourceRepository   The repository description, for error messages
+     * @param sink               Receives the resolved artifacts, on the calling thread
+     * @throws MojoExecutionException if any artifact failed to resolve or verify, or the sink failed
+     */
+    void stream(final Resolution resolution, final Module module, final List<RemoteRepository> remoteRepositories,
+                final String sourceRepository, final Sink sink) throws MojoExecutionException {
+        ArtifactResult catalogResult;
+        try {
+            catalogResult = artifactResolver.resolveArtifact(resolution.session, catalogRequest(module, remoteRepositories));
+        } catch (ArtifactResolutionException are) {
+            throw new MojoExecutionException("Could not locate artifact catalog in remote repository.", are);
+        }
+
+        try {
+            catalogue(resolution, module, catalogResult, remoteRepositories);
+        } catch (IOException ioe) {
+            throw new MojoExecutionException("Could not read artifact catalog", ioe);
+        }
+
+        for (ArtifactResult result : module.results) {
+            sink.accept(result);
+        }
+
+        List<ArtifactRequest> requiredArtifacts = new ArrayList<ArtifactRequest>(module.required.size());
+        for (ArtifactCatalog.Entry entry : module.required) {
+            requiredArtifacts.add(new ArtifactRequest(new DefaultArtifact(entry.getCoordinates()), remoteRepositories, null));
+        }
+
+        // Keep a couple of resolved artifacts per worker queued up, so transfers continue while the sink works.
+        int workers = Math.max(1, threads);
+        try {
+            log.debug("Streaming " + requiredArtifacts.size() + " artifacts with " + workers + " threads and " + retries + " retries.");
+            new ParallelArtifactResolver(artifactResolver, workers, retries, log).resolveArtifacts(resolution.session, requiredArtifacts, workers * 2,
+                    new ParallelArtifactResolver.Listener() {
+                        @Override
+                        public void resolved(int index, ArtifactResult result) throws MojoExecutionException {
+                            verify(resolution, module.required.get(index), result);
+                            module.results.add(result);
+                            sink.accept(result);
+                        }
+                    });
+        } catch (ArtifactResolutionException are) {
+            throw new MojoExecutionException("Failed to resolve the required project files from: " + sourceRepository, are);
+        } finally {
+            if (resolution.cache != null && !requiredArtifacts.isEmpty()) {
+                resolution.cache.evict();
+            }
+        }
+    }
+
+    private static ArtifactRequest catalogRequest(final Module module, final List<RemoteRepository> remoteRepositories) {
+        return new ArtifactRequest(new DefaultArtifact(module.groupId, module.artifactId, "catalog", "txt", module.version), remoteRepositories, null);
+    }
+
+    /**
+     * Reads a module's catalog, sorting the catalogued artifacts into those already present, and those which need to
+     * be transferred.
+     */
+    private void catalogue(final Resolution resolution, final Module module, final ArtifactResult catalogResult,
+                           final List<RemoteRepository> remoteRepositories) throws IOException {
+        module.results.add(catalogResult);
+
+        for (ArtifactCatalog.Entry entry : ArtifactCatalog.read(catalogResult.getArtifact().getFile()).getEntries()) {
+            ArtifactRequest request = new ArtifactRequest(new DefaultArtifact(entry.getCoordinates()), remoteRepositories, null);
+
+            File present = findPresent(resolution, module, entry, request.getArtifact());
+            File cached = resolution.cache == null ? null : new File(resolution.tempRepo, resolution.session.getLocalRepositoryManager().getPathForLocalArtifact(request.getArtifact()));
+            if (present == null && cached != null && resolution.cache.retrieve(entry, cached)) {
+                log.info("Skipping transfer of: " + entry.getCoordinates() + ", verified copy found in the artifact cache.");
+                module.results.add(presentResult(request, cached));
+            } else if (present != null) {
+                log.info("Skipping transfer of: " + entry.getCoordinates() + ", verified copy already present @ " + present);
+                module.results.add(presentResult(request, present));
+            } else {
+                // And require a transfer.
+                module.required.add(entry);
+            }
+        }
+    }
+
+    /**
+     * Verifies a transferred file against its catalog entry (when it has a digest), and adds it to the artifact cache.
+     */
+    private void verify(final Resolution resolution, final ArtifactCatalog.Entry entry, final ArtifactResult result) throws MojoExecutionException {
+        try {
+            if (entry.hasDigest() && !entry.matches(result.getArtifact().getFile())) {
+                throw new MojoExecutionException("Resolved artifact: " + entry.getCoordinates() + " does not match the size and SHA-256 digest recorded in the artifact catalog.");
+            }
+        } catch (IOException ioe) {
+            throw new MojoExecutionException("Failed to verify resolved artifact: " + entry.getCoordinates(), ioe);
+        }
+
+        if (resolution.cache != null) {
+            resolution.cache.store(entry, result.getArtifact().getFile());
+        }
+    }
+
+    private List<ArtifactResult> resolveAll(final RepositorySystemSession session, final List<ArtifactRequest> requests) throws ArtifactResolutionException {
+        if (threads > 1 || retries > 0) {
+            log.debug("Resolving " + requests.size() + " artifacts with " + threads + " threads and " + retries + " retries.");
+            return new ParallelArtifactResolver(artifactResolver, threads, retries, log).resolveArtifacts(session, requests);
+        }
+        return artifactResolver.resolveArtifacts(session, requests);
+    }
+
+    private static boolean allResolved(final List<ArtifactResult> results) {
+        for (ArtifactResult result : results) {
+            if (!result.isResolved()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static ArtifactResult presentResult(final ArtifactRequest request, final File file) {
+        ArtifactResult result = new ArtifactResult(request);
+        result.setArtifact(request.getArtifact().setFile(file));
+        return result;
+    }
+
+    /**
+     * Looks for a file matching the size and digest of a catalog entry in the module's build directory, or the local
+     * repository (unless it is disabled).
+     *
+     * @return The matching file, or <code>null</code> if there is none (or the entry has no digest)
+     */
+    private File findPresent(final Resolution resolution, final Module module, final ArtifactCatalog.Entry entry, final Artifact artifact) throws IOException {
+        if (!entry.hasDigest()) {
+            return null;
+        }
+
+        String fileName = artifact.getArtifactId() + "-" + artifact.getVersion()
+                + (artifact.getClassifier().length() > 0 ? "-" + artifact.getClassifier() : "") + "." + artifact.getExtension();
+
+        List<File> candidates = new ArrayList<File>();
+        candidates.add(new File(module.buildDirectory, fileName));
+        if (!resolution.disableLocal) {
+            RepositorySystemSession local = resolution.original;
+            candidates.add(new File(local.getLocalRepository().getBasedir(), local.getLocalRepositoryManager().getPathForLocalArtifact(artifact)));
+        }
+
+        for (File candidate : candidates) {
+            if (entry.matches(candidate)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Receives artifacts as they are resolved.
+     */
+    interface Sink {
+        void accept(ArtifactResult result) throws MojoExecutionException;
+    }
+
+    /**
+     * A repository session to resolve within, and the temporary local repository backing it (if any).
+     */
+    static final class Resolution {
+        private final RepositorySystemSession original;
+        private final DefaultRepositorySystemSession session;
+        private final File tempRepo;
+        private final ArtifactCache cache;
+        private final boolean disableLocal;
+
+        private Resolution(final RepositorySystemSession original, final DefaultRepositorySystemSession session, final File tempRepo,
+                           final ArtifactCache cache, final boolean disableLocal) {
+            this.original = original;
+            this.session = session;
+            this.tempRepo = tempRepo;
+            this.cache = cache;
+            this.disableLocal = disableLocal;
+        }
+
+        /**
+         * Deletes the temporary local repository (in the background), if there is one.
+         */
+        void close(final Log log) {
+            if (tempRepo != null) {
+                TempRepositoryCleaner.of(original).delete(tempRepo, log);
+            }
+        }
+    }
+
+    /**
+     * The catalogued artifacts of a single module.
+     */
+    static final class Module {
+        private final String id;
+        private final String groupId;
+        private final String artifactId;
+        private final String version;
+        private final File buildDirectory;
+
+        private final List<ArtifactResult> results = new ArrayList<ArtifactResult>();
+        private final List<ArtifactCatalog.Entry> required = new ArrayList<ArtifactCatalog.Entry>();
+        private MojoExecutionException failure;
+
+        /**
+         * @param project        The module
+         * @param buildDirectory The module's build directory, checked for artifacts already present
+         */
+        Module(final MavenProject project, final File buildDirectory) {
+            this.id = project.getId();
+            this.groupId = project.getGroupId();
+            this.artifactId = project.getArtifactId();
+            this.version = project.getVersion();
+            this.buildDirectory = buildDirectory;
+        }
+
+        String getId() {
+            return id;
+        }
+
+        /**
+         * @return <code>true</code> if the module's catalog was resolved, and so the module can be promoted
+         */
+        boolean hasCatalog() {
+            return !results.isEmpty();
+        }
+
+        /**
+         * @return The resolved catalog and catalogued artifacts
+         * @throws MojoExecutionException if any of them failed to resolve or verify
+         */
+        List<ArtifactResult> getResults() throws MojoExecutionException {
+            if (failure != null) {
+                throw failure;
+            }
+            return results;
+        }
+    }
+}
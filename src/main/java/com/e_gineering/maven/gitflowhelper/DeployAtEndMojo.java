@@ -0,0 +1,77 @@
+package com.e_gineering.maven.gitflowhelper;
+
+import org.apache.maven.RepositoryUtils;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.deployment.DeployRequest;
+import org.eclipse.aether.repository.Proxy;
+import org.eclipse.aether.repository.RemoteRepository;
+
+/**
+ * Deploys the artifacts of every module in the reactor to the repositories set by retarget-deploy, once the last
+ * module has finished, uploading several modules at once.
+ * <p/>
+ * Takes the place of the maven-deploy-plugin, which should be disabled (ex: by binding its default-deploy execution to
+ * no phase). Every module in the reactor needs to run this goal. The uploads start once they all have, or once the
+ * last module of the reactor has, and any module which hasn't run the goal by then is reported. If any module fails
+ * before then, nothing is deployed.
+ */
+@Mojo(name = "deploy-at-end", defaultPhase = LifecyclePhase.DEPLOY, threadSafe = true)
+public class DeployAtEndMojo extends AbstractGitflowBasedRepositoryMojo {
+
+    @Component
+    private RepositorySystem repositorySystem;
+
+    /**
+     * The number of modules to upload concurrently.
+     */
+    @Parameter(property = "deployThreads", defaultValue = "4")
+    private int deployThreads = 4;
+
+    @Override
+    protected void execute(final GitBranchType type, final String gitBranch, final String branchPattern) throws MojoExecutionException, MojoFailureException {
+        DeployRequest request = null;
+        if (Boolean.parseBoolean(project.getProperties().getProperty("maven.deploy.skip"))
+                || Boolean.parseBoolean(session.getUserProperties().get("maven.deploy.skip"))) {
+            getLog().info("Skipping artifact deployment (maven.deploy.skip)");
+        } else {
+            request = new DeployRequest();
+            request.setRepository(getTargetRepository());
+            for (org.eclipse.aether.artifact.Artifact artifact : ReactorDeployment.artifactsOf(project, null)) {
+                request.addArtifact(artifact);
+            }
+            getLog().info("Deploying " + request.getArtifacts().size() + " artifacts to: " + request.getRepository().getUrl() + " at the end of the build.");
+        }
+
+        ReactorDeployment deployment = ReactorDeployment.obtain(session, reactorProjects);
+        if (deployment.add(project, request)) {
+            deployment.deploy(repositorySystem, session, deployThreads, getLog());
+        }
+    }
+
+    /**
+     * @return The repository the project deploys to, as set by retarget-deploy (or the distributionManagement).
+     */
+    private RemoteRepository getTargetRepository() throws MojoExecutionException {
+        ArtifactRepository repository = project.getDistributionManagementArtifactRepository();
+        if (repository == null) {
+            throw new MojoExecutionException("Deployment failed: repository element was not specified in the POM inside distributionManagement element, "
+                    + "and retarget-deploy did not set one for this branch.");
+        }
+
+        RemoteRepository remoteRepository = RepositoryUtils.toRepo(repository);
+        if (remoteRepository.getProxy() == null && session.getProxySelector() != null) {
+            Proxy proxy = session.getProxySelector().getProxy(remoteRepository);
+            if (proxy != null) {
+                remoteRepository = new RemoteRepository.Builder(remoteRepository).setProxy(proxy).build();
+            }
+        }
+        return remoteRepository;
+    }
+}
@@ -0,0 +1,202 @@
+package com.e_gineering.maven.gitflowhelper;
+
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.repository.ArtifactRepositoryFactory;
+import org.apache.maven.artifact.repository.Authentication;
+import org.apache.maven.artifact.repository.layout.ArtifactRepositoryLayout;
+import org.apache.maven.model.Repository;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.util.repository.AuthenticationBuilder;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Builds the repositories named by the <code>*DeploymentRepository</code> settings, either as an
+ * <code>id::layout::url::unique</code> definition, or as the id of one of the project's repositories.
+ * <p/>
+ * Repositories are shared for the whole session (through the {@link SessionState}), so they are only built once, and
+ * Aether can reuse connections to them across modules. Used by the mojos, and by the build extension.
+ */
+final class DeploymentRepositories {
+
+    private static final Pattern ALT_REPO_SYNTAX_PATTERN = Pattern.compile("(.+)::(.+)::(.+)::(.+)");
+
+    private static final String DEPLOYMENT_REPOSITORY_KEY = DeploymentRepositories.class.getName() + ".deploymentRepository";
+
+    private static final String DEFINITION_KEY = DeploymentRepositories.class.getName() + ".definition";
+
+    private static final String REMOTE_REPOSITORY_KEY = DeploymentRepositories.class.getName() + ".remoteRepository";
+
+    private final ArtifactRepositoryFactory repositoryFactory;
+
+    private final Map<String, ArtifactRepositoryLayout> repositoryLayouts;
+
+    private final RepositorySystemSession session;
+
+    private final Log log;
+
+    DeploymentRepositories(final ArtifactRepositoryFactory repositoryFactory, final Map<String, ArtifactRepositoryLayout> repositoryLayouts,
+                           final RepositorySystemSession session, final Log log) {
+        this.repositoryFactory = repositoryFactory;
+        this.repositoryLayouts = repositoryLayouts;
+        this.session = session;
+        this.log = log;
+    }
+
+    /**
+     * Builds an ArtifactRepository for targeting deployments, or returns the one already built for the same repository
+     * definition during this session.
+     *
+     * @param project       The project whose repositories repository ids refer to
+     * @param altRepository The repository definition, or id
+     */
+    ArtifactRepository getDeploymentRepository(final MavenProject project, final String altRepository) throws MojoExecutionException, MojoFailureException {
+        // Definitions are looked up as given, before any parsing. Ids also depend on the repositories of the project.
+        List<Object> definition = altRepository.contains("::")
+                ? Arrays.<Object>asList(DEFINITION_KEY, altRepository)
+                : Arrays.<Object>asList(DEFINITION_KEY, altRepository, new Identity(project.getRepositories()));
+        ConcurrentMap<Object, Object> state = SessionState.of(session);
+        ArtifactRepository repository = (ArtifactRepository) state.get(definition);
+        if (repository != null) {
+            return repository;
+        }
+
+        Matcher matcher = ALT_REPO_SYNTAX_PATTERN.matcher(altRepository);
+        Repository candidate = null;
+        if (!matcher.matches()) {
+            for (int i = 0; i < project.getRepositories().size(); i++) {
+                candidate = project.getRepositories().get(i);
+                log.debug("Checking defined repository ID: " + candidate.getId().trim() + " against: " + altRepository.trim());
+                if (candidate.getId().trim().equals(altRepository.trim())) {
+                    break;
+                }
+                candidate = null;
+            }
+
+            if (candidate == null) {
+                throw new MojoFailureException(altRepository, "Invalid syntax for repository or repository id not resolved..",
+                        "Invalid syntax for repository. Use \"id::layout::url::unique\" or only specify the \"id\".");
+            }
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Getting maven deployment repository (to target artifacts) for: " + altRepository);
+        }
+
+        String id;
+        String layout;
+        String url;
+        boolean unique;
+        if (candidate == null) {
+            id = matcher.group(1).trim();
+            layout = matcher.group(2).trim();
+            url = matcher.group(3).trim();
+            unique = Boolean.parseBoolean(matcher.group(4).trim());
+        } else {
+            id = candidate.getId();
+            layout = candidate.getLayout();
+            url = candidate.getUrl();
+            unique = candidate.getSnapshots().isEnabled();
+        }
+
+        // Authentication, mirrors and proxies come from the settings, which are the same for the whole session.
+        List<Object> key = Arrays.<Object>asList(DEPLOYMENT_REPOSITORY_KEY, id, layout, url, unique);
+        repository = (ArtifactRepository) state.get(key);
+        if (repository == null) {
+            repository = repositoryFactory.createDeploymentArtifactRepository(id, url, getLayout(layout), unique);
+            ArtifactRepository existing = (ArtifactRepository) state.putIfAbsent(key, repository);
+            if (existing != null) {
+                repository = existing;
+            }
+        }
+        state.putIfAbsent(definition, repository);
+        return repository;
+    }
+
+    /**
+     * Builds a RemoteRepository for resolving artifacts, or returns the one already built for the same repository and
+     * authentication during this session.
+     *
+     * @param project       The project whose repositories repository ids refer to
+     * @param altRepository The repository definition, or id
+     */
+    RemoteRepository getRepository(final MavenProject project, final String altRepository) throws MojoExecutionException, MojoFailureException {
+        if (log.isDebugEnabled()) {
+            log.debug("Creating remote Aether repository (to resolve remote artifacts) for: " + altRepository);
+        }
+        // Get an appropriate injected ArtifactRepository. (This resolves authentication in the 'normal' manner from Maven)
+        ArtifactRepository remoteArtifactRepo = getDeploymentRepository(project, altRepository);
+
+        if (log.isDebugEnabled()) {
+            log.debug("Resolved maven deployment repository. Transcribing to Aether Repository...");
+        }
+
+        // Share one instance per repository and effective authentication, so connections can be reused across modules.
+        Authentication authentication = remoteArtifactRepo.getAuthentication();
+        List<Object> key = Arrays.<Object>asList(REMOTE_REPOSITORY_KEY, remoteArtifactRepo.getId(), remoteArtifactRepo.getLayout().getId(), remoteArtifactRepo.getUrl(),
+                authentication == null ? null : Arrays.asList(authentication.getUsername(), authentication.getPassword(), authentication.getPrivateKey(), authentication.getPassphrase()));
+        ConcurrentMap<Object, Object> state = SessionState.of(session);
+        RemoteRepository remoteRepository = (RemoteRepository) state.get(key);
+        if (remoteRepository != null) {
+            return remoteRepository;
+        }
+
+        RemoteRepository.Builder remoteRepoBuilder = new RemoteRepository.Builder(remoteArtifactRepo.getId(), remoteArtifactRepo.getLayout().getId(), remoteArtifactRepo.getUrl());
+
+        // Add authentication.
+        if (remoteArtifactRepo.getAuthentication() != null) {
+            if (log.isDebugEnabled()) {
+                log.debug("Maven deployment repsoitory has Authentication. Transcribing to Aether Authentication...");
+            }
+            remoteRepoBuilder.setAuthentication(new AuthenticationBuilder().addUsername(remoteArtifactRepo.getAuthentication().getUsername())
+                    .addPassword(remoteArtifactRepo.getAuthentication().getPassword())
+                    .addPrivateKey(remoteArtifactRepo.getAuthentication().getPrivateKey(), remoteArtifactRepo.getAuthentication().getPassphrase())
+                    .build());
+        }
+
+        remoteRepository = remoteRepoBuilder.build();
+        RemoteRepository existing = (RemoteRepository) state.putIfAbsent(key, remoteRepository);
+        return existing != null ? existing : remoteRepository;
+    }
+
+    /**
+     * Compares by identity, as the repositories of a project don't compare their urls.
+     */
+    private static final class Identity {
+
+        private final Object value;
+
+        Identity(final Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            return other instanceof Identity && ((Identity) other).value == value;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(value);
+        }
+    }
+
+    private ArtifactRepositoryLayout getLayout(final String id) throws MojoExecutionException {
+        ArtifactRepositoryLayout layout = repositoryLayouts.get(id);
+        if (layout == null) {
+            throw new MojoExecutionException("Invalid repository layout: " + id);
+        }
+
+        return layout;
+    }
+}
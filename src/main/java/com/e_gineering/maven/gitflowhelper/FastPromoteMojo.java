@@ -0,0 +1,106 @@
+package com.e_gineering.maven.gitflowhelper;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.codehaus.plexus.util.FileUtils;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.deployment.DeployRequest;
+import org.eclipse.aether.deployment.DeploymentException;
+
+import java.io.IOException;
+
+/**
+ * Promotes the artifacts of a master or support build from the stage repository to the release repository, without
+ * running the module lifecycle at all.
+ * <p/>
+ * Invoked directly (<code>mvn gitflow-helper:fast-promote</code>), this goal does everything a master build needs for
+ * each module: it resolves the artifact catalog and the catalogued artifacts from stage, attaches them, and deploys
+ * them (along with the project pom) to the release repository. The build directory is only cleaned if it has anything
+ * in it.
+ * <p/>
+ * With <code>directPromotion</code>, artifacts are promoted from repository to repository instead, without touching
+ * the build directory at all.
+ */
+@Mojo(name = "fast-promote", threadSafe = true)
+public class FastPromoteMojo extends AbstractGitflowBasedRepositoryMojo {
+
+    @Component
+    private RepositorySystem repositorySystem;
+
+    /**
+     * Promote artifacts straight from the stage repository to the release repository, rather than attaching them to
+     * the project first. Within the file system when both are <code>file://</code> repositories.
+     */
+    @Parameter(property = "directPromotion", defaultValue = "false")
+    private boolean directPromotion;
+
+    @Override
+    protected void execute(final GitBranchType type, final String gitBranch, final String branchPattern) throws MojoExecutionException, MojoFailureException {
+        switch (type) {
+            case SUPPORT:
+            case MASTER: {
+                if (directPromotion) {
+                    getLog().info("Promoting artifacts from stageDeploymentRepository [" + stageDeploymentRepository + "] to releaseDeploymentRepository [" + releaseDeploymentRepository + "]");
+                    long start = System.currentTimeMillis();
+                    int promoted = new RepositoryPromoter(repositorySystem, new CatalogResolver(artifactResolver, localRepositoryManagerFactory, resolutionThreads,
+                            resolutionRetries, artifactCacheDirectory, artifactCacheSize * 1024 * 1024, getLog()), getLog())
+                            .promote(session, project, getRepository(stageDeploymentRepository), stageDeploymentRepository, getRepository(releaseDeploymentRepository));
+                    getLog().info("Promoted " + promoted + " artifacts in " + (System.currentTimeMillis() - start) + " ms.");
+                    break;
+                }
+
+                cleanBuildDirectory();
+
+                getLog().info("Resolving & Reattaching existing artifacts from stageDeploymentRepository [" + stageDeploymentRepository + "]");
+                attachExistingArtifacts(stageDeploymentRepository, disableLocal);
+
+                getLog().info("Deploying artifacts to releaseDeploymentRepository [" + releaseDeploymentRepository + "]");
+                deployProjectArtifacts();
+                break;
+            }
+            default: {
+                getLog().info("Nothing to promote from branch: " + gitBranch + ". fast-promote only promotes master and support builds.");
+                break;
+            }
+        }
+    }
+
+    /**
+     * Stands in for the clean a lifecycle build would run, skipping it when there is nothing to clean.
+     */
+    private void cleanBuildDirectory() throws MojoExecutionException {
+        String[] contents = buildDirectory.list();
+        if (contents == null || contents.length == 0) {
+            getLog().debug("Build directory is empty, skipping clean: " + buildDirectory);
+            return;
+        }
+
+        try {
+            getLog().info("Cleaning build directory: " + buildDirectory);
+            FileUtils.cleanDirectory(buildDirectory);
+        } catch (IOException ioe) {
+            throw new MojoExecutionException("Failed to clean build directory: " + buildDirectory, ioe);
+        }
+    }
+
+    /**
+     * Deploys the project pom, the project artifact and the attached artifacts, the way the deploy plugin would.
+     */
+    private void deployProjectArtifacts() throws MojoExecutionException, MojoFailureException {
+        DeployRequest request = new DeployRequest();
+        request.setRepository(getRepository(releaseDeploymentRepository));
+        for (Artifact artifact : ReactorDeployment.artifactsOf(project, "no artifacts were promoted from: " + stageDeploymentRepository)) {
+            request.addArtifact(artifact);
+        }
+
+        try {
+            repositorySystem.deploy(session, request);
+        } catch (DeploymentException de) {
+            throw new MojoExecutionException("Failed to deploy promoted artifacts to: " + releaseDeploymentRepository, de);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.e_gineering.maven.gitflowhelper;
+
+import com.e_gineering.maven.gitflowhelper.properties.EnvironmentProperties;
+import com.e_gineering.maven.gitflowhelper.properties.ExpansionBuffer;
+import com.e_gineering.maven.gitflowhelper.properties.PropertyResolver;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.scm.manager.ScmManager;
+import org.eclipse.aether.RepositorySystemSession;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Immutable description of the gitflow state of the current build: the resolved git branch, the
+ * {@link GitBranchType} it was classified as, the pattern (and capture groups) it matched, and the environment it
+ * was resolved against.
+ * <p/>
+ * A context is computed once per reactor for each combination of <code>gitBranchExpression</code> and branch
+ * patterns, either by the {@link MasterPromoteExtension} or by the first mojo execution needing it, and published
+ * into the session so every other mojo execution can read it without forking git again.
+ * Expressions are resolved against the properties of the project which first computed the context.
+ */
+public final class GitflowContext {
+
+    private static final String DEFAULT_BRANCH_EXPRESSION_KEY = GitflowContext.class.getName() + ".defaultBranchExpression";
+
+    private final String gitBranchExpression;
+    private final String gitBranch;
+    private final GitBranchType type;
+    private final String branchPattern;
+    private final List<String> groups;
+    private final Properties environment;
+
+    private GitflowContext(final String gitBranchExpression, final String gitBranch, final GitBranchType type,
+                           final String branchPattern, final List<String> groups, final Properties environment) {
+        this.gitBranchExpression = gitBranchExpression;
+        this.gitBranch = gitBranch;
+        this.type = type;
+        this.branchPattern = branchPattern;
+        this.groups = Collections.unmodifiableList(groups);
+        this.environment = environment;
+    }
+
+    /**
+     * Returns the context for the given branch expression and patterns, computing and publishing it into the session
+     * if no other execution has done so yet.
+     *
+     * @param session                  The current repository session, used to share the context across the reactor
+     * @param project                  The project used to resolve the SCM branch and the gitBranchExpression
+     * @param scmManager               The ScmManager used to resolve the branch, if no gitBranchExpression is given
+     * @param log                      A Log to write to
+     * @param gitBranchExpression      The configured gitBranchExpression, or <code>null</code> to use the SCM / default
+     * @param masterBranchPattern      The pattern matching master branches
+     * @param supportBranchPattern     The pattern matching support branches
+     * @param releaseBranchPattern     The pattern matching release branches
+     * @param hotfixBranchPattern      The pattern matching hotfix branches
+     * @param developmentBranchPattern The pattern matching the development branch
+     * @return The shared context
+     */
+    static GitflowContext obtain(final RepositorySystemSession session, final MavenProject project, final ScmManager scmManager, final Log log,
+                                 final String gitBranchExpression, final String masterBranchPattern, final String supportBranchPattern,
+                                 final String releaseBranchPattern, final String hotfixBranchPattern, final String developmentBranchPattern) {
+        ConcurrentMap<Object, Object> state = SessionState.of(session);
+
+        String key = GitflowContext.class.getName() + ":" + gitBranchExpression + ":" + masterBranchPattern + ":" + supportBranchPattern
+                + ":" + releaseBranchPattern + ":" + hotfixBranchPattern + ":" + developmentBranchPattern;
+
+        GitflowContext context = (GitflowContext) state.get(key);
+        if (context != null) {
+            return context;
+        }
+
+        Properties environment = EnvironmentProperties.getInstance();
+
+        String expression = gitBranchExpression;
+        if (expression == null) {
+            expression = (String) state.get(DEFAULT_BRANCH_EXPRESSION_KEY);
+            if (expression == null) {
+                state.putIfAbsent(DEFAULT_BRANCH_EXPRESSION_KEY, ScmUtils.resolveBranchOrExpression(scmManager, project, log));
+                expression = (String) state.get(DEFAULT_BRANCH_EXPRESSION_KEY);
+            }
+        }
+
+        // Try to resolve the gitBranchExpression to an actual Value...
+        String gitBranch = new PropertyResolver().resolveValue(expression, project.getProperties(), environment);
+
+        GitBranchType type = GitBranchType.UNDEFINED;
+        String branchPattern = null;
+        List<String> groups = Collections.emptyList();
+
+        if (!new ExpansionBuffer(gitBranch).hasMoreLegalPlaceholders()) {
+            /*
+             * (/origin/)?master goes to the maven 'release' repo.
+             * (/origin/)?release/(.*) , (/origin/)?hotfix/(.*) , and (/origin/)?bugfix/(.*) go to the maven 'stage' repo.
+             * (/origin/)?develop goes to the 'snapshot' repo.
+             * All other builds will use the default semantics for 'deploy'.
+             */
+            BranchClassifier.Classification classification = BranchClassifier.getInstance(masterBranchPattern, supportBranchPattern,
+                    releaseBranchPattern, hotfixBranchPattern, developmentBranchPattern).classify(gitBranch);
+            type = classification.getType();
+            branchPattern = classification.getBranchPattern();
+            groups = classification.getGroups();
+        }
+
+        state.putIfAbsent(key, new GitflowContext(expression, gitBranch, type, branchPattern, groups, environment));
+        return (GitflowContext) state.get(key);
+    }
+
+    /**
+     * @return The gitBranchExpression the branch was resolved from
+     */
+    public String getGitBranchExpression() {
+        return gitBranchExpression;
+    }
+
+    /**
+     * @return The resolved git branch (which may still contain placeholders if the type is UNDEFINED)
+     */
+    public String getGitBranch() {
+        return gitBranch;
+    }
+
+    /**
+     * @return The type of branch being built
+     */
+    public GitBranchType getType() {
+        return type;
+    }
+
+    /**
+     * @return The pattern the branch matched, or <code>null</code> for OTHER and UNDEFINED branches
+     */
+    public String getBranchPattern() {
+        return branchPattern;
+    }
+
+    /**
+     * @return The capture groups of the matched branch pattern (group 1 first), empty if nothing matched
+     */
+    public List<String> getGroups() {
+        return groups;
+    }
+
+    /**
+     * @return The (read-only) view of the system environment variables
+     */
+    public Properties getEnvironment() {
+        return environment;
+    }
+}
@@ -1,35 +1,53 @@
 package com.e_gineering.maven.gitflowhelper;
 
+import com.e_gineering.maven.gitflowhelper.properties.EnvironmentProperties;
 import com.e_gineering.maven.gitflowhelper.properties.PropertyResolver;
 import org.apache.maven.AbstractMavenLifecycleParticipant;
 import org.apache.maven.MavenExecutionException;
+import org.apache.maven.artifact.repository.ArtifactRepositoryFactory;
+import org.apache.maven.artifact.repository.layout.ArtifactRepositoryLayout;
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.lifecycle.internal.MojoDescriptorCreator;
 import org.apache.maven.model.Plugin;
 import org.apache.maven.monitor.logging.DefaultLog;
+import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.plugin.prefix.NoPluginFoundForPrefixException;
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.scm.manager.ScmManager;
 import org.codehaus.plexus.component.annotations.Component;
 import org.codehaus.plexus.component.annotations.Requirement;
 import org.codehaus.plexus.logging.Logger;
-import org.codehaus.plexus.util.cli.CommandLineUtils;
 import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.eclipse.aether.impl.ArtifactResolver;
+import org.eclipse.aether.internal.impl.EnhancedLocalRepositoryManagerFactory;
+import org.eclipse.aether.repository.RemoteRepository;
 
-import java.io.IOException;
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 /**
  * Maven extension which removes (skips) undesired plugins from the build reactor when running on a master branch.
  * <p/>
- * Essentially, enables using the master branch as a 'promotion' branch.
+ * Essentially, enables using the master branch as a 'promotion' branch. When <code>prefetchPromotion</code> is enabled,
+ * and the build is going to promote, the extension also starts resolving the artifacts of every module from the stage
+ * repository in the background, while the rest of the build starts up. The first module to be promoted waits for the
+ * whole batch to finish resolving, later modules find their artifacts ready.
  */
 @Component(role = AbstractMavenLifecycleParticipant.class, hint = "promote-master")
 public class MasterPromoteExtension extends AbstractMavenLifecycleParticipant {
 
+    private static final String GITFLOW_HELPER_PLUGIN_KEY = "com.e-gineering:gitflow-helper-maven-plugin";
+
+    private static final String DEPLOY_PLUGIN_KEY = "org.apache.maven.plugins:maven-deploy-plugin";
+
     @Requirement
     private MojoDescriptorCreator descriptorCreator;
 
@@ -39,124 +57,308 @@ public class MasterPromoteExtension extends AbstractMavenLifecycleParticipant {
     @Requirement
     protected ScmManager scmManager;
 
+    @Requirement
+    private ArtifactResolver artifactResolver;
+
+    @Requirement
+    private EnhancedLocalRepositoryManagerFactory localRepositoryManagerFactory;
+
+    @Requirement
+    private ArtifactRepositoryFactory repositoryFactory;
+
+    @Requirement(role = ArtifactRepositoryLayout.class)
+    private Map<String, ArtifactRepositoryLayout> repositoryLayouts;
+
     @Override
     public void afterProjectsRead(MavenSession session) throws MavenExecutionException {
-        Properties systemEnvVars = null;
-        try {
-            systemEnvVars = CommandLineUtils.getSystemEnvVars();
-        } catch (IOException ioe) {
-            throw new MavenExecutionException("Unable to read System Envirionment Variables: ", ioe);
-        }
-
-        // Look for a gitflow-helper-maven-plugin, so we can determine what the gitBranchExpression and masterBranchPattern are...
+        // Look for a gitflow-helper-maven-plugin, so we can determine what the gitBranchExpression and branch patterns are...
         String masterBranchPattern = null;
         String supportBranchPattern = null;
+        String releaseBranchPattern = null;
+        String hotfixBranchPattern = null;
+        String developmentBranchPattern = null;
 
         String gitBranchExpression = null;
         boolean pluginFound = false;
 
-        // Any plugin which is part of the project goals needs to be retained.
-        List<Plugin> pluginsToRetain = new ArrayList<Plugin>(session.getGoals().size());
+        for (MavenProject project : session.getProjects()) {
+            Plugin plugin = findPlugin(project, GITFLOW_HELPER_PLUGIN_KEY);
+            if (plugin == null) {
+                continue;
+            }
+            pluginFound = true;
 
-        List<String> goals = session.getGoals();
-        for (String goal : goals) {
-            int delimiter = goal.indexOf(":");
-            if (delimiter != -1) {
-                String prefix = goal.substring(0, delimiter);
-                try {
-                    pluginsToRetain.add(descriptorCreator.findPluginForPrefix(prefix, session));
-                } catch (NoPluginFoundForPrefixException ex) {
-                    logger.warn("gitflow-helper-maven-plugin: Unable to resolve project plugin for prefix: " + prefix + " for goal: " + goal);
-//                    throw new MavenExecutionException("Unable to resolve plugin for prefix: " + prefix, ex);
-                }
+            logger.debug("gitflow-helper-maven-plugin found in project: [" + project.getName() + "]");
+
+            if (masterBranchPattern == null) {
+                masterBranchPattern = extractPluginConfigValue("masterBranchPattern", plugin);
+            }
+
+            if (supportBranchPattern == null) {
+                supportBranchPattern = extractPluginConfigValue("supportBranchPattern", plugin);
+            }
+
+            if (releaseBranchPattern == null) {
+                releaseBranchPattern = extractPluginConfigValue("releaseBranchPattern", plugin);
+            }
+
+            if (hotfixBranchPattern == null) {
+                hotfixBranchPattern = extractPluginConfigValue("hotfixBranchPattern", plugin);
+            }
+
+            if (developmentBranchPattern == null) {
+                developmentBranchPattern = extractPluginConfigValue("developmentBranchPattern", plugin);
+            }
+
+            if (gitBranchExpression == null) {
+                gitBranchExpression = extractPluginConfigValue("gitBranchExpression", plugin);
+            }
+
+            // Nothing left to find in the rest of the reactor.
+            if (masterBranchPattern != null && supportBranchPattern != null && releaseBranchPattern != null
+                    && hotfixBranchPattern != null && developmentBranchPattern != null && gitBranchExpression != null) {
+                break;
             }
         }
 
-        // Build up a map of plugins to remove from projects, if we're on the master branch.
-        HashMap<MavenProject, List<Plugin>> pluginsToDrop = new HashMap<MavenProject, List<Plugin>>();
+        if (!pluginFound) {
+            return;
+        }
 
-        for (MavenProject project : session.getProjects()) {
-            List<Plugin> dropPlugins = new ArrayList<Plugin>();
+        if (masterBranchPattern == null) {
+            logger.debug("Using default master branch Pattern.");
+            masterBranchPattern = "(origin/)?master";
+        }
+        logger.debug("Master Branch Pattern: " + masterBranchPattern);
+
+        if (supportBranchPattern == null) {
+            logger.debug("Using default support branch Pattern.");
+            supportBranchPattern = "(origin/)?support/(.*)";
+        }
+        logger.debug("Support Branch Pattern: " + supportBranchPattern);
 
-            for (Plugin plugin : project.getBuildPlugins()) {
-                // Don't drop our plugin. Read it's config
-                if (plugin.getKey().equals("com.e-gineering:gitflow-helper-maven-plugin")) {
-                    pluginFound = true;
+        if (releaseBranchPattern == null) {
+            logger.debug("Using default release branch Pattern.");
+            releaseBranchPattern = "(origin/)?release/(.*)";
+        }
+        logger.debug("Release Branch Pattern: " + releaseBranchPattern);
 
-                    logger.debug("gitflow-helper-maven-plugin found in project: [" + project.getName() + "]");
+        if (hotfixBranchPattern == null) {
+            logger.debug("Using default hotfix branch Pattern.");
+            hotfixBranchPattern = "(origin/)?hotfix/(.*)";
+        }
+        logger.debug("Hotfix Branch Pattern: " + hotfixBranchPattern);
 
-                    if (masterBranchPattern == null) {
-                        masterBranchPattern = extractPluginConfigValue("masterBranchPattern", plugin);
-                    }
+        if (developmentBranchPattern == null) {
+            logger.debug("Using default development branch Pattern.");
+            developmentBranchPattern = "(origin/)?develop";
+        }
+        logger.debug("Development Branch Pattern: " + developmentBranchPattern);
 
-                    if (supportBranchPattern == null) {
-                        supportBranchPattern = extractPluginConfigValue("supportBranchPattern", plugin);
-                    }
+        if (gitBranchExpression == null) {
+            logger.debug("Using default branch expression resolver.");
+        } else {
+            logger.debug("Git Branch Expression: " + gitBranchExpression);
+        }
 
-                    if (gitBranchExpression == null) {
-                        gitBranchExpression = extractPluginConfigValue("gitBranchExpression", plugin);
-                    }
-                    // Don't drop things we declare goals for.
-                } else if (pluginsToRetain.contains(plugin)) {
-                    logger.debug("gitflow-helper-maven-plugin retaining plugin: " + plugin + " from project: " + project.getName());
-                    // Don't drop the maven-deploy-plugin
-                } else if (plugin.getKey().equals("org.apache.maven.plugins:maven-deploy-plugin")) {
-                    logger.debug("gitflow-helper-maven-plugin retaining plugin: " + plugin + " from project: " + project.getName());
-                } else {
-                    logger.debug("gitflow-helper-maven-plugin removing plugin: " + plugin + " from project: " + project.getName());
-                    dropPlugins.add(plugin);
-                }
-            }
+        // Resolve and publish the gitflow context once for the whole reactor, so the mojos don't have to.
+        GitflowContext context = GitflowContext.obtain(session.getRepositorySession(), session.getTopLevelProject(), scmManager, new DefaultLog(logger),
+                gitBranchExpression, masterBranchPattern, supportBranchPattern, releaseBranchPattern, hotfixBranchPattern, developmentBranchPattern);
 
-            pluginsToDrop.put(project, dropPlugins);
+        String gitBranch = context.getGitBranch();
+        logger.info("gitflow-helper-maven-plugin: Build Extension resolved gitBranchExpression: " + context.getGitBranchExpression() + " to: " + gitBranch);
+
+        // If the current git branch matches the master or support branch, prune the build plugin list.
+        if (GitBranchType.MASTER.equals(context.getType())) {
+            logger.info("gitflow-helper-maven-plugin: Enabling MasterPromoteExtension. GIT_BRANCH: [" + gitBranch + "] matches masterBranchPattern: [" + masterBranchPattern + "]");
+        } else if (GitBranchType.SUPPORT.equals(context.getType())) {
+            logger.info("gitflow-helper-maven-plugin: Enabling MasterPromoteExtension. GIT_BRANCH: [" + gitBranch + "] matches supportBranchPattern: [" + supportBranchPattern + "]");
+        } else {
+            // Nothing to prune on any other branch.
+            return;
         }
 
-        if (pluginFound) {
-            if (masterBranchPattern == null) {
-                logger.debug("Using default master branch Pattern.");
-                masterBranchPattern = "(origin/)?master";
+        pruneBuild(session);
+
+        if (Boolean.parseBoolean(configValue(session, "prefetchPromotion"))) {
+            if (promotes(session)) {
+                prefetchPromotion(session);
+            } else {
+                logger.debug("gitflow-helper-maven-plugin: Not prefetching promoted artifacts, the build doesn't deploy or promote.");
             }
-            logger.debug("Master Branch Pattern: " + masterBranchPattern);
+        }
+    }
 
-            if (supportBranchPattern == null) {
-                logger.debug("Using default support branch Pattern.");
-                supportBranchPattern = "(origin/)?support/(.*)";
+    /**
+     * @return <code>true</code> if the goals of the session run the deploy phase, or invoke a promoting goal directly.
+     */
+    private static boolean promotes(MavenSession session) {
+        for (String goal : session.getGoals()) {
+            if ("deploy".equals(goal) || goal.endsWith(":promote-master") || goal.endsWith(":fast-promote")) {
+                return true;
             }
-            logger.debug("Support Branch Pattern: " + supportBranchPattern);
+        }
+        return false;
+    }
 
-            if (gitBranchExpression == null) {
-                logger.debug("Using default branch expression resolver.");
-                gitBranchExpression = ScmUtils.resolveBranchOrExpression(scmManager, session.getTopLevelProject(), new DefaultLog(logger));
+    /**
+     * Deletes whatever temporary repositories the session left behind. Only called by Maven 3.2.1 and later, earlier
+     * versions leave them to be swept up by a later build.
+     */
+    public void afterSessionEnd(MavenSession session) throws MavenExecutionException {
+        TempRepositoryCleaner cleaner = TempRepositoryCleaner.find(session.getRepositorySession());
+        if (cleaner != null) {
+            cleaner.close(new DefaultLog(logger));
+        }
+    }
+
+    /**
+     * Starts resolving the catalogued artifacts of every module from the stage repository, on a background thread.
+     * The batch is left in the session state, where the promote-master goal of each module picks it up.
+     */
+    private void prefetchPromotion(MavenSession session) {
+        Log log = new DefaultLog(logger);
+
+        String stageDeploymentRepository = configValue(session, "stageDeploymentRepository");
+        if (stageDeploymentRepository == null) {
+            logger.debug("gitflow-helper-maven-plugin: Not prefetching promoted artifacts, stageDeploymentRepository could not be determined.");
+            return;
+        }
+
+        CatalogResolver resolver;
+        List<RemoteRepository> remoteRepositories;
+        try {
+            String cacheDirectory = configValue(session, "artifactCacheDirectory");
+            String cacheSize = configValue(session, "artifactCacheSize");
+            resolver = new CatalogResolver(artifactResolver, localRepositoryManagerFactory,
+                    intValue(configValue(session, "resolutionThreads"), 1), intValue(configValue(session, "resolutionRetries"), 0),
+                    cacheDirectory == null ? null : new File(cacheDirectory), (cacheSize == null ? 10240 : Long.parseLong(cacheSize)) * 1024 * 1024, log);
+
+            remoteRepositories = Collections.singletonList(new DeploymentRepositories(repositoryFactory, repositoryLayouts, session.getRepositorySession(), log)
+                    .getRepository(session.getTopLevelProject(), stageDeploymentRepository));
+        } catch (Exception ex) {
+            // The mojos will resolve (and report on) their artifacts themselves.
+            logger.warn("gitflow-helper-maven-plugin: Not prefetching promoted artifacts: " + ex.getMessage());
+            return;
+        }
+
+        List<CatalogResolver.Module> modules = new ArrayList<CatalogResolver.Module>(session.getProjects().size());
+        for (MavenProject project : session.getProjects()) {
+            modules.add(new CatalogResolver.Module(project, new File(project.getBuild().getDirectory())));
+        }
+
+        // The mojos only find the batch if it resolves the same way they would.
+        boolean disableLocal = !"false".equalsIgnoreCase(configValue(session, "disableLocal"));
+
+        logger.info("gitflow-helper-maven-plugin: Prefetching artifacts to promote from stageDeploymentRepository [" + stageDeploymentRepository + "]");
+        PromotionBatch.obtain(resolver, session.getRepositorySession(), stageDeploymentRepository, disableLocal, modules, remoteRepositories, log).start();
+    }
+
+    /**
+     * Reads a parameter of the gitflow-helper-maven-plugin the way the mojos would see it: from the plugin
+     * configuration (or user properties), with any expressions resolved.
+     *
+     * @return The value, or <code>null</code> if it isn't set, or can't be resolved yet
+     */
+    private String configValue(MavenSession session, String parameter) {
+        String value = null;
+        for (int i = 0; i < session.getProjects().size() && value == null; i++) {
+            Plugin plugin = findPlugin(session.getProjects().get(i), GITFLOW_HELPER_PLUGIN_KEY);
+            if (plugin != null) {
+                value = extractPluginConfigValue(parameter, plugin);
             }
-            logger.debug("Git Branch Expression: " + gitBranchExpression);
+        }
+        if (value == null) {
+            value = session.getUserProperties().getProperty(parameter);
+        }
+        if (value == null) {
+            return null;
+        }
+
+        Properties properties = new Properties();
+        properties.putAll(session.getSystemProperties());
+        properties.putAll(session.getTopLevelProject().getProperties());
+        properties.putAll(session.getUserProperties());
+        value = new PropertyResolver().resolveValue(value, properties, EnvironmentProperties.getInstance());
 
+        return value.contains("${") ? null : value.trim();
+    }
+
+    private static int intValue(String value, int defaultValue) {
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    /**
+     * Drops all the plugins from the build except for the gitflow-helper-maven-plugin, the maven-deploy-plugin, or
+     * plugins we invoked goals for which could be mapped back to plugins in our project build.
+     * <p/>
+     * Goals invoked from the commandline which cannot be mapped back to our project, will get warnings, but should
+     * still execute. If someone is on 'master' and starts executing goals, we need to allow them to do that.
+     */
+    private void pruneBuild(MavenSession session) {
+        // Any plugin which is part of the project goals needs to be retained.
+        Set<String> pluginsToRetain = new HashSet<String>();
+        pluginsToRetain.add(GITFLOW_HELPER_PLUGIN_KEY);
+        pluginsToRetain.add(DEPLOY_PLUGIN_KEY);
+
+        for (String goal : session.getGoals()) {
+            int delimiter = goal.indexOf(":");
+            if (delimiter != -1) {
+                String prefix = goal.substring(0, delimiter);
+                try {
+                    pluginsToRetain.add(descriptorCreator.findPluginForPrefix(prefix, session).getKey());
+                } catch (NoPluginFoundForPrefixException ex) {
+                    logger.warn("gitflow-helper-maven-plugin: Unable to resolve project plugin for prefix: " + prefix + " for goal: " + goal);
+                }
+            }
+        }
+
+        // Modules usually inherit identical plugin lists, so each distinct list is only decided once.
+        Map<List<String>, boolean[]> decisions = new HashMap<List<String>, boolean[]>();
 
-            PropertyResolver pr = new PropertyResolver();
-            String gitBranch = pr.resolveValue(gitBranchExpression, session.getCurrentProject().getProperties(), systemEnvVars);
-            logger.info("gitflow-helper-maven-plugin: Build Extension resolved gitBranchExpression: " + gitBranchExpression + " to: " + gitBranch);
+        for (MavenProject project : session.getProjects()) {
+            List<Plugin> plugins = project.getBuildPlugins();
 
-            // If the current git branch matches the master or support branch, prune the build plugin list.
-            boolean pruneBuild = false;
-            if (gitBranch != null && gitBranch.matches(masterBranchPattern)) {
-                logger.info("gitflow-helper-maven-plugin: Enabling MasterPromoteExtension. GIT_BRANCH: [" + gitBranch + "] matches masterBranchPattern: [" + masterBranchPattern + "]");
-                pruneBuild = true;
-            } else if (gitBranch != null && gitBranch.matches(supportBranchPattern)) {
-                logger.info("gitflow-helper-maven-plugin: Enabling MasterPromoteExtension. GIT_BRANCH: [" + gitBranch + "] matches supportBranchPattern: [" + supportBranchPattern + "]");
-                pruneBuild = true;
+            List<String> keys = new ArrayList<String>(plugins.size());
+            for (Plugin plugin : plugins) {
+                keys.add(plugin.getKey());
             }
 
-            if (pruneBuild) {
-                for (MavenProject project : session.getProjects()) {
-                    // Drop all the plugins from the build except for the gitflow-helper-maven-plugin, or plugins we
-                    // invoked goals for which could be mapped back to plugins in our project build.
-                    // Goals invoked from the commandline which cannot be mapped back to our project, will get warnings, but should still execute.
-                    // If someone is on 'master' and starts executing goals, we need to allow them to do that.
-                    project.getBuildPlugins().removeAll(pluginsToDrop.get(project));
+            boolean[] retain = decisions.get(keys);
+            if (retain == null) {
+                retain = new boolean[keys.size()];
+                for (int i = 0; i < retain.length; i++) {
+                    retain[i] = pluginsToRetain.contains(keys.get(i));
+                }
+                decisions.put(keys, retain);
+            }
+
+            int i = 0;
+            for (Iterator<Plugin> it = plugins.iterator(); it.hasNext(); i++) {
+                Plugin plugin = it.next();
+                if (retain[i]) {
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("gitflow-helper-maven-plugin retaining plugin: " + plugin + " from project: " + project.getName());
+                    }
+                } else {
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("gitflow-helper-maven-plugin removing plugin: " + plugin + " from project: " + project.getName());
+                    }
+                    it.remove();
                 }
             }
         }
     }
 
+    private static Plugin findPlugin(MavenProject project, String key) {
+        for (Plugin plugin : project.getBuildPlugins()) {
+            if (plugin.getKey().equals(key)) {
+                return plugin;
+            }
+        }
+        return null;
+    }
+
     private String extractPluginConfigValue(String parameter, Plugin plugin) {
         String value = extractConfigValue(parameter, plugin.getConfiguration());
         for (int i = 0; i < plugin.getExecutions().size() && value == null; i++) {
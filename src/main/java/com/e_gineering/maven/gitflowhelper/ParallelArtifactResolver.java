@@ -0,0 +1,222 @@
+package com.e_gineering.maven.gitflowhelper;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.impl.ArtifactResolver;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+import org.eclipse.aether.resolution.ArtifactResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resolves a set of artifacts concurrently on a bounded pool of worker threads, retrying each artifact individually.
+ * <p/>
+ * Failures don't stop the other artifacts from resolving. Once every artifact has been attempted, all failures are
+ * reported together in a single {@link ArtifactResolutionException}, the same way
+ * {@link ArtifactResolver#resolveArtifacts(RepositorySystemSession, java.util.Collection)} reports them.
+ */
+class ParallelArtifactResolver {
+
+    // Delay before the first retry of an artifact. Each further retry waits one more multiple of this.
+    private static final long RETRY_BACKOFF_MILLIS = 1000;
+
+    private final ArtifactResolver artifactResolver;
+
+    private final int threads;
+
+    private final int retries;
+
+    private final Log log;
+
+    /**
+     * @param artifactResolver The resolver to resolve each artifact with
+     * @param threads          The maximum number of artifacts to resolve concurrently
+     * @param retries          The number of times to retry each artifact which fails to resolve
+     * @param log              A Log to write to
+     */
+    ParallelArtifactResolver(final ArtifactResolver artifactResolver, final int threads, final int retries, final Log log) {
+        this.artifactResolver = artifactResolver;
+        this.threads = Math.max(1, threads);
+        this.retries = Math.max(0, retries);
+        this.log = log;
+    }
+
+    /**
+     * Resolves the requested artifacts.
+     *
+     * @param session  The repository session to resolve within
+     * @param requests The artifacts to resolve
+     * @return The results, in the order of the requests
+     * @throws ArtifactResolutionException if any of the artifacts failed to resolve, holding the results of all of them
+     */
+    List<ArtifactResult> resolveArtifacts(final RepositorySystemSession session, final List<ArtifactRequest> requests) throws ArtifactResolutionException {
+        List<ArtifactResult> results = new ArrayList<ArtifactResult>(requests.size());
+        if (requests.isEmpty()) {
+            return results;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, requests.size()), new ResolverThreadFactory());
+        try {
+            List<Future<ArtifactResult>> futures = new ArrayList<Future<ArtifactResult>>(requests.size());
+            for (final ArtifactRequest request : requests) {
+                futures.add(executor.submit(new Callable<ArtifactResult>() {
+                    @Override
+                    public ArtifactResult call() throws Exception {
+                        return resolveArtifact(session, request);
+                    }
+                }));
+            }
+
+            boolean failed = false;
+            for (int i = 0; i < futures.size(); i++) {
+                ArtifactResult result;
+                try {
+                    result = futures.get(i).get();
+                } catch (ExecutionException ee) {
+                    result = new ArtifactResult(requests.get(i));
+                    result.addException(ee.getCause() instanceof Exception ? (Exception) ee.getCause() : ee);
+                }
+                failed |= !result.isResolved();
+                results.add(result);
+            }
+
+            if (failed) {
+                throw new ArtifactResolutionException(results);
+            }
+            return results;
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new ArtifactResolutionException(results, "Interrupted while resolving artifacts.", ie);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Resolves the requested artifacts, handing each one to the listener (on the calling thread) as soon as it has
+     * resolved, rather than once all of them have.
+     * <p/>
+     * Resolved artifacts wait in a bounded queue for the listener, so workers stop resolving more artifacts while the
+     * listener falls behind.
+     *
+     * @param session  The repository session to resolve within
+     * @param requests The artifacts to resolve
+     * @param capacity The number of resolved artifacts which may wait for the listener
+     * @param listener Receives each resolved artifact
+     * @throws ArtifactResolutionException  if any of the artifacts failed to resolve, holding the results of all of them
+     * @throws MojoExecutionException if the listener fails, which stops the resolution
+     */
+    void resolveArtifacts(final RepositorySystemSession session, final List<ArtifactRequest> requests, final int capacity,
+                          final Listener listener) throws ArtifactResolutionException, MojoExecutionException {
+        final ArtifactResult[] results = new ArtifactResult[requests.size()];
+        if (requests.isEmpty()) {
+            return;
+        }
+
+        final BlockingQueue<Integer> completed = new ArrayBlockingQueue<Integer>(Math.max(1, capacity));
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, requests.size()), new ResolverThreadFactory());
+        try {
+            for (int i = 0; i < requests.size(); i++) {
+                final int index = i;
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            results[index] = resolveArtifact(session, requests.get(index));
+                        } catch (InterruptedException ie) {
+                            Thread.currentThread().interrupt();
+                            results[index] = new ArtifactResult(requests.get(index)).addException(ie);
+                        } catch (Throwable t) {
+                            // Anything escaping (even an Error) is recorded, so the listener's thread is always signalled.
+                            results[index] = new ArtifactResult(requests.get(index)).addException(t instanceof Exception ? (Exception) t : new ExecutionException(t));
+                        } finally {
+                            try {
+                                completed.put(index);
+                            } catch (InterruptedException ie) {
+                                Thread.currentThread().interrupt();
+                            }
+                        }
+                    }
+                });
+            }
+
+            boolean failed = false;
+            for (int i = 0; i < requests.size(); i++) {
+                int index = completed.take();
+                if (results[index].isResolved()) {
+                    listener.resolved(index, results[index]);
+                } else {
+                    failed = true;
+                }
+            }
+
+            if (failed) {
+                throw new ArtifactResolutionException(Arrays.asList(results));
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new ArtifactResolutionException(new ArrayList<ArtifactResult>(), "Interrupted while resolving artifacts.", ie);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Resolves a single artifact, retrying failures.
+     *
+     * @return The result. Never throws for resolution failures, the result holds the exceptions instead.
+     */
+    ArtifactResult resolveArtifact(final RepositorySystemSession session, final ArtifactRequest request) throws InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return artifactResolver.resolveArtifact(session, request);
+            } catch (ArtifactResolutionException are) {
+                if (attempt >= retries) {
+                    return are.getResult() != null ? are.getResult() : new ArtifactResult(request).addException(are);
+                }
+                log.warn("Failed to resolve: " + request.getArtifact() + ", retrying (" + (attempt + 1) + " of " + retries + ")...");
+                Thread.sleep(RETRY_BACKOFF_MILLIS * (attempt + 1));
+            }
+        }
+    }
+
+    /**
+     * Receives artifacts as they resolve.
+     */
+    interface Listener {
+        /**
+         * @param index  The index of the artifact's request
+         * @param result The resolved artifact
+         * @throws MojoExecutionException to stop resolving
+         */
+        void resolved(int index, ArtifactResult result) throws MojoExecutionException;
+    }
+
+    private static class ResolverThreadFactory implements ThreadFactory {
+        private static final AtomicInteger POOL = new AtomicInteger();
+
+        private final int pool = POOL.incrementAndGet();
+
+        private final AtomicInteger thread = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread t = new Thread(runnable, "gitflow-helper-resolver-" + pool + "-" + thread.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
@@ -32,7 +32,7 @@ public class PromoteMasterMojo extends AbstractGitflowBasedRepositoryMojo {
             case MASTER: {
                 getLog().info("Resolving & Reattaching existing artifacts from stageDeploymentRepository [" + stageDeploymentRepository + "]");
 
-                attachExistingArtifacts(stageDeploymentRepository, true);
+                attachExistingArtifacts(stageDeploymentRepository, disableLocal);
 
                 break;
             }
@@ -0,0 +1,151 @@
+package com.e_gineering.maven.gitflowhelper;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.repository.RemoteRepository;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * The catalogued artifacts of every module in the reactor, resolved together by whichever module gets to them first.
+ * <p/>
+ * Batches are kept in the {@link SessionState}, one per source repository. The first module to ask for a batch
+ * resolves it (other modules wait for it), unless the build extension already started resolving it in the background.
+ * The temporary local repository it was resolved into is deleted once every module with a catalog has attached its
+ * artifacts.
+ */
+final class PromotionBatch {
+
+    private static final String KEY = PromotionBatch.class.getName();
+
+    private final FutureTask<Map<String, CatalogResolver.Module>> task;
+
+    private final Set<String> pending = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private volatile CatalogResolver.Resolution resolution;
+
+    private PromotionBatch(final CatalogResolver resolver, final RepositorySystemSession session, final boolean disableLocal,
+                           final List<CatalogResolver.Module> modules, final List<RemoteRepository> remoteRepositories, final String sourceRepository, final Log log) {
+        this.task = new FutureTask<Map<String, CatalogResolver.Module>>(new Callable<Map<String, CatalogResolver.Module>>() {
+            @Override
+            public Map<String, CatalogResolver.Module> call() throws Exception {
+                resolution = resolver.open(session, disableLocal);
+                resolver.resolve(resolution, modules, remoteRepositories, sourceRepository);
+
+                Map<String, CatalogResolver.Module> byId = new LinkedHashMap<String, CatalogResolver.Module>();
+                for (CatalogResolver.Module module : modules) {
+                    byId.put(module.getId(), module);
+                    if (module.hasCatalog()) {
+                        pending.add(module.getId());
+                    }
+                }
+
+                if (pending.isEmpty()) {
+                    resolution.close(log);
+                }
+                return byId;
+            }
+        });
+    }
+
+    /**
+     * Returns the batch for the given source repository, creating it if this is the first module to ask.
+     *
+     * @param resolver           The resolver to resolve the batch with
+     * @param session            The current repository session
+     * @param sourceRepository   The repository to promote from
+     * @param disableLocal       Whether to resolve into a temporary local repository
+     * @param modules            Every module in the reactor
+     * @param remoteRepositories The repositories to resolve from
+     * @param log                A Log to write to
+     * @return The batch
+     */
+    static PromotionBatch obtain(final CatalogResolver resolver, final RepositorySystemSession session, final String sourceRepository,
+                                 final boolean disableLocal, final List<CatalogResolver.Module> modules, final List<RemoteRepository> remoteRepositories,
+                                 final Log log) {
+        ConcurrentMap<Object, Object> state = SessionState.of(session);
+        String key = key(sourceRepository, disableLocal);
+
+        PromotionBatch batch = (PromotionBatch) state.get(key);
+        if (batch == null) {
+            PromotionBatch created = new PromotionBatch(resolver, session, disableLocal, modules, remoteRepositories, sourceRepository, log);
+            batch = (PromotionBatch) state.putIfAbsent(key, created);
+            if (batch == null) {
+                batch = created;
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Returns the batch for the given source repository, if one has been started.
+     *
+     * @param session          The current repository session
+     * @param sourceRepository The repository to promote from
+     * @param disableLocal     Whether the batch resolves into a temporary local repository
+     * @return The batch, or <code>null</code> if there is none
+     */
+    static PromotionBatch find(final RepositorySystemSession session, final String sourceRepository, final boolean disableLocal) {
+        return (PromotionBatch) SessionState.peek(session, key(sourceRepository, disableLocal));
+    }
+
+    /**
+     * Starts resolving the batch on a background thread, so modules find it (partly) resolved when they ask for it.
+     */
+    void start() {
+        Thread thread = new Thread(task, "gitflow-helper-prefetch");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Returns the resolved artifacts of a module, resolving the whole batch first if no other module has yet.
+     *
+     * @param moduleId The id of the module
+     * @return The module's resolved artifacts
+     * @throws MojoExecutionException if the batch could not be resolved, or the module isn't part of it
+     */
+    CatalogResolver.Module await(final String moduleId) throws MojoExecutionException {
+        // Only the first caller runs the task, everyone else waits for it.
+        task.run();
+        try {
+            CatalogResolver.Module module = task.get().get(moduleId);
+            if (module == null) {
+                throw new MojoExecutionException("Module: " + moduleId + " is not part of the promotion batch.");
+            }
+            return module;
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while waiting for the promotion batch.", ie);
+        } catch (ExecutionException ee) {
+            throw new MojoExecutionException("Failed to resolve the promotion batch.", ee.getCause());
+        }
+    }
+
+    private static String key(final String sourceRepository, final boolean disableLocal) {
+        return KEY + ":" + sourceRepository + ":" + disableLocal;
+    }
+
+    /**
+     * Marks a module's artifacts as attached, closing the resolution once no module is left to attach.
+     *
+     * @param moduleId The id of the module
+     * @param log      A Log to write to
+     */
+    void release(final String moduleId, final Log log) {
+        if (pending.remove(moduleId) && pending.isEmpty() && resolution != null) {
+            log.debug("Every module of the promotion batch has been attached, cleaning up.");
+            resolution.close(log);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.e_gineering.maven.gitflowhelper;
+
+import org.apache.maven.RepositoryUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.deployment.DeployRequest;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The deployments of every module in the reactor, gathered as each module finishes, and uploaded together once the
+ * last one has.
+ * <p/>
+ * The uploads start when every module has finished, or when the last module of the reactor has (like the deployAtEnd
+ * of the maven-deploy-plugin), whichever comes first. Modules which haven't finished by then are reported, and
+ * deployed on their own if they finish later.
+ * <p/>
+ * Each module is deployed by a single request, so its artifacts are uploaded before the repository metadata which
+ * refers to them, and a snapshot gets one timestamp and build number for all of its artifacts. Modules are deployed
+ * concurrently, except for modules which update the same repository metadata (maven plugins of the same group, which
+ * share the group's plugin prefix metadata). Those take turns.
+ */
+final class ReactorDeployment {
+
+    private static final String KEY = ReactorDeployment.class.getName();
+
+    // The ids of the modules in the reactor, in build order.
+    private final List<String> modules;
+
+    private final Map<String, Module> pending = new LinkedHashMap<String, Module>();
+
+    private final Map<String, Object> metadataLocks = new HashMap<String, Object>();
+
+    private final Set<String> finished = new HashSet<String>();
+
+    private boolean started;
+
+    private boolean reported;
+
+    private ReactorDeployment(final List<String> modules) {
+        this.modules = modules;
+    }
+
+    /**
+     * Returns the deployment of the current session, creating it if this is the first module to ask.
+     *
+     * @param session         The current repository session
+     * @param reactorProjects The modules in the reactor, in build order
+     * @return The deployment
+     */
+    static ReactorDeployment obtain(final RepositorySystemSession session, final List<MavenProject> reactorProjects) {
+        ConcurrentMap<Object, Object> state = SessionState.of(session);
+        ReactorDeployment deployment = (ReactorDeployment) state.get(KEY);
+        if (deployment == null) {
+            List<String> modules = new ArrayList<String>(reactorProjects.size());
+            for (MavenProject reactorProject : reactorProjects) {
+                modules.add(reactorProject.getId());
+            }
+            ReactorDeployment created = new ReactorDeployment(modules);
+            deployment = (ReactorDeployment) state.putIfAbsent(KEY, created);
+            if (deployment == null) {
+                deployment = created;
+            }
+        }
+        return deployment;
+    }
+
+    /**
+     * Collects the artifacts of a project to deploy, the way the deploy plugin would: the pom, the project artifact
+     * (unless the project is a pom) and the attached artifacts.
+     *
+     * @param project The project
+     * @param origin  Where the artifacts come from, for the error message (ex: "no artifacts were promoted from: stage"),
+     *                or <code>null</code>
+     * @return The artifacts, each with its file
+     * @throws MojoExecutionException if the project has neither a project artifact file, nor any attached artifacts
+     */
+    static List<Artifact> artifactsOf(final MavenProject project, final String origin) throws MojoExecutionException {
+        List<Artifact> artifacts = new ArrayList<Artifact>();
+        artifacts.add(new DefaultArtifact(project.getGroupId(), project.getArtifactId(), "", "pom", project.getVersion()).setFile(project.getFile()));
+
+        if (!"pom".equals(project.getPackaging())) {
+            File file = project.getArtifact().getFile();
+            if (file != null && file.isFile()) {
+                artifacts.add(RepositoryUtils.toArtifact(project.getArtifact()));
+            } else if (project.getAttachedArtifacts().isEmpty()) {
+                throw new MojoExecutionException("The packaging for this project did not assign a file to the build artifact"
+                        + (origin == null ? "" : ", " + origin));
+            }
+        }
+
+        for (org.apache.maven.artifact.Artifact attached : project.getAttachedArtifacts()) {
+            artifacts.add(RepositoryUtils.toArtifact(attached));
+        }
+        return artifacts;
+    }
+
+    /**
+     * Records that a module has finished, and what it deploys.
+     *
+     * @param project The module
+     * @param request The module's deployment, or <code>null</code> if it doesn't deploy anything
+     * @return <code>true</code> if the deployment should now be uploaded: this was the last module to finish, or the
+     * last module of the reactor, or a module finishing after the uploads started
+     */
+    synchronized boolean add(final MavenProject project, final DeployRequest request) {
+        if (request != null) {
+            // Maven plugins share the plugin prefix metadata of their group, every other module has metadata of its own.
+            String metadataKey = "maven-plugin".equals(project.getPackaging()) ? project.getGroupId() : project.getId();
+            Object metadataLock = metadataLocks.get(metadataKey);
+            if (metadataLock == null) {
+                metadataLock = new Object();
+                metadataLocks.put(metadataKey, metadataLock);
+            }
+            pending.put(project.getId(), new Module(request, metadataLock));
+        }
+        finished.add(project.getId());
+
+        if (!started && (finished.containsAll(modules) || project.getId().equals(modules.get(modules.size() - 1)))) {
+            started = true;
+            return true;
+        }
+        return started;
+    }
+
+    /**
+     * Uploads the deployments of every module.
+     *
+     * @param repositorySystem The repository system to deploy with
+     * @param session          The current repository session
+     * @param threads          The number of modules to deploy concurrently
+     * @param log              A Log to write to
+     * @throws MojoExecutionException if any module failed to deploy
+     */
+    void deploy(final RepositorySystem repositorySystem, final RepositorySystemSession session, final int threads, final Log log) throws MojoExecutionException {
+        Map<String, Module> deploying;
+        List<String> unfinished = new ArrayList<String>();
+        boolean late;
+        synchronized (this) {
+            deploying = new LinkedHashMap<String, Module>(pending);
+            pending.clear();
+
+            late = reported;
+            if (!reported) {
+                reported = true;
+                for (String module : modules) {
+                    if (!finished.contains(module)) {
+                        unfinished.add(module);
+                    }
+                }
+            }
+        }
+
+        if (!unfinished.isEmpty()) {
+            log.warn(unfinished.size() + " modules of the reactor haven't queued their deployment, and aren't deployed with the rest: " + unfinished
+                    + ". Modules which don't run deploy-at-end are never deployed, the others are deployed on their own when they finish.");
+        }
+        if (deploying.isEmpty()) {
+            return;
+        }
+        if (late) {
+            log.info("Deploying " + deploying.keySet() + ", which finished after the rest of the reactor was deployed.");
+        }
+
+        log.info("Deploying " + deploying.size() + " modules with " + threads + " threads.");
+        long start = System.currentTimeMillis();
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, deploying.size())));
+        try {
+            Map<String, Future<?>> futures = new LinkedHashMap<String, Future<?>>();
+            for (final Map.Entry<String, Module> entry : deploying.entrySet()) {
+                futures.put(entry.getKey(), executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        Module module = entry.getValue();
+                        synchronized (module.metadataLock) {
+                            log.info("Deploying: " + entry.getKey() + " to: " + module.request.getRepository().getUrl());
+                            repositorySystem.deploy(session, module.request);
+                        }
+                        return null;
+                    }
+                }));
+            }
+
+            // Wait for everything, so a failure doesn't leave uploads running behind our back.
+            List<String> failed = new ArrayList<String>();
+            Throwable cause = null;
+            for (Map.Entry<String, Future<?>> future : futures.entrySet()) {
+                try {
+                    future.getValue().get();
+                } catch (ExecutionException ee) {
+                    log.error("Failed to deploy: " + future.getKey(), ee.getCause());
+                    failed.add(future.getKey());
+                    if (cause == null) {
+                        cause = ee.getCause();
+                    }
+                }
+            }
+
+            if (!failed.isEmpty()) {
+                throw new MojoExecutionException("Failed to deploy " + failed.size() + " of " + deploying.size() + " modules: " + failed, cause);
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while deploying the reactor.", ie);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        log.info("Deployed " + deploying.size() + " modules in " + (System.currentTimeMillis() - start) + " ms.");
+    }
+
+    private static final class Module {
+        private final DeployRequest request;
+        private final Object metadataLock;
+
+        private Module(final DeployRequest request, final Object metadataLock) {
+            this.request = request;
+            this.metadataLock = metadataLock;
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.e_gineering.maven.gitflowhelper;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.deployment.DeployRequest;
+import org.eclipse.aether.deployment.DeploymentException;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.repository.RepositoryPolicy;
+import org.eclipse.aether.resolution.ArtifactResult;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Promotes the catalogued artifacts of a module straight from one repository to another, without attaching them to
+ * the project or placing them in the build directory.
+ * <p/>
+ * When both repositories are local directories (<code>file://</code> URLs with the default layout), each artifact is
+ * hard linked (or, across file systems, copied) from the source repository into the target repository, verified
+ * against the size and SHA-256 digest in the catalog (or, for catalogs without digests, the <code>.sha1</code>
+ * checksum in the source repository), and moved into place along with freshly computed checksums. Otherwise artifacts
+ * are resolved into a temporary repository, failing on any checksum mismatch, verified against the catalog as they
+ * arrive, and deployed from there.
+ * <p/>
+ * Either way, the project pom is deployed through the repository system last, which also updates the repository
+ * metadata of the target repository.
+ */
+final class RepositoryPromoter {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final RepositorySystem repositorySystem;
+
+    private final CatalogResolver resolver;
+
+    private final Log log;
+
+    /**
+     * @param repositorySystem The repository system to deploy with
+     * @param resolver         Resolves the catalog and artifacts when the repositories aren't both local
+     * @param log              A Log to write to
+     */
+    RepositoryPromoter(final RepositorySystem repositorySystem, final CatalogResolver resolver, final Log log) {
+        this.repositorySystem = repositorySystem;
+        this.resolver = resolver;
+        this.log = log;
+    }
+
+    /**
+     * Promotes the catalogued artifacts, and the pom, of a project.
+     *
+     * @param session          The current repository session
+     * @param project          The project to promote
+     * @param source           The repository to promote from
+     * @param sourceRepository The source repository description, for error messages
+     * @param target           The repository to promote to
+     * @return The number of artifacts promoted, including the pom
+     * @throws MojoExecutionException if any artifact couldn't be promoted
+     */
+    int promote(final RepositorySystemSession session, final MavenProject project, final RemoteRepository source,
+                final String sourceRepository, final RemoteRepository target) throws MojoExecutionException {
+        File sourceDirectory = directoryOf(source);
+        File targetDirectory = directoryOf(target);
+
+        DeployRequest request = new DeployRequest();
+        request.setRepository(target);
+
+        int promoted;
+        CatalogResolver.Resolution resolution = null;
+        try {
+            if (sourceDirectory != null && targetDirectory != null) {
+                log.info("Promoting within the file system, from: " + sourceDirectory + " to: " + targetDirectory);
+                promoted = promoteLocally(project, sourceDirectory, sourceRepository, targetDirectory);
+            } else {
+                // Catalogs without digests leave verifying the transfers to the repository checksums, so insist on them.
+                DefaultRepositorySystemSession verifying = new DefaultRepositorySystemSession(session);
+                verifying.setChecksumPolicy(RepositoryPolicy.CHECKSUM_POLICY_FAIL);
+                resolution = resolver.open(verifying, true);
+                promoted = resolveForDeployment(resolution, project, source, sourceRepository, request);
+            }
+
+            Artifact pom = new DefaultArtifact(project.getGroupId(), project.getArtifactId(), "", "pom", project.getVersion()).setFile(project.getFile());
+            request.addArtifact(pom);
+
+            repositorySystem.deploy(session, request);
+        } catch (DeploymentException de) {
+            throw new MojoExecutionException("Failed to deploy promoted artifacts to: " + target.getUrl(), de);
+        } finally {
+            // Resolved artifacts are deployed straight from the temporary repository, so it has to outlive the deploy.
+            if (resolution != null) {
+                resolution.close(log);
+            }
+        }
+        return promoted + 1;
+    }
+
+    /**
+     * Resolves (and verifies) the catalog and catalogued artifacts, adding them to the deploy request.
+     */
+    private int resolveForDeployment(final CatalogResolver.Resolution resolution, final MavenProject project, final RemoteRepository source,
+                                     final String sourceRepository, final DeployRequest request) throws MojoExecutionException {
+        final int[] resolved = {0};
+        resolver.stream(resolution, new CatalogResolver.Module(project, new File(project.getBuild().getDirectory())),
+                Collections.singletonList(source), sourceRepository, new CatalogResolver.Sink() {
+                    @Override
+                    public void accept(ArtifactResult result) {
+                        request.addArtifact(result.getArtifact());
+                        resolved[0]++;
+                    }
+                });
+        return resolved[0];
+    }
+
+    /**
+     * Links the catalog, and the artifacts it lists, from one local repository directory into another.
+     */
+    private int promoteLocally(final MavenProject project, final File sourceDirectory, final String sourceRepository,
+                               final File targetDirectory) throws MojoExecutionException {
+        Artifact catalogArtifact = new DefaultArtifact(project.getGroupId(), project.getArtifactId(), "catalog", "txt", project.getVersion());
+        File catalogFile = new File(sourceDirectory, pathOf(catalogArtifact));
+        if (!catalogFile.isFile()) {
+            throw new MojoExecutionException("Could not locate artifact catalog in: " + sourceRepository + " @ " + catalogFile);
+        }
+
+        List<ArtifactCatalog.Entry> entries;
+        try {
+            entries = ArtifactCatalog.read(catalogFile).getEntries();
+        } catch (IOException ioe) {
+            throw new MojoExecutionException("Could not read artifact catalog", ioe);
+        }
+
+        promoteFile(new ArtifactCatalog.Entry(catalogArtifact.toString(), -1, null), catalogFile, new File(targetDirectory, pathOf(catalogArtifact)));
+        for (ArtifactCatalog.Entry entry : entries) {
+            String path = pathOf(new DefaultArtifact(entry.getCoordinates()));
+            File sourceFile = new File(sourceDirectory, path);
+            if (!sourceFile.isFile()) {
+                throw new MojoExecutionException("Failed to resolve the required project file: " + entry.getCoordinates() + " from: " + sourceRepository);
+            }
+            promoteFile(entry, sourceFile, new File(targetDirectory, path));
+        }
+        return entries.size() + 1;
+    }
+
+    /**
+     * Places a single file in the target repository: linked (or copied) next to its final location, verified while
+     * its checksums are computed, and then moved into place. Files without a digest in the catalog are verified
+     * against their <code>.sha1</code> checksum in the source repository instead, which has to exist.
+     */
+    private void promoteFile(final ArtifactCatalog.Entry entry, final File source, final File target) throws MojoExecutionException {
+        File temp = new File(target.getParentFile(), ".promoting-" + UUID.randomUUID() + "-" + target.getName());
+        File md5 = new File(target.getPath() + ".md5");
+        File sha1 = new File(target.getPath() + ".sha1");
+        try {
+            AttachStrategy used = AttachStrategy.LINK.attach(source, temp);
+
+            String[] digests = digest(temp, "SHA-256", "SHA-1", "MD5");
+            if (entry.hasDigest()) {
+                if (temp.length() != entry.getSize() || !entry.getSha256().equalsIgnoreCase(digests[0])) {
+                    throw new MojoExecutionException("Artifact: " + entry.getCoordinates() + " in: " + source + " does not match the size and SHA-256 digest recorded in the artifact catalog.");
+                }
+            } else {
+                File sourceSha1 = new File(source.getPath() + ".sha1");
+                String expected = readChecksum(sourceSha1);
+                if (expected == null) {
+                    throw new MojoExecutionException("Artifact: " + entry.getCoordinates() + " has no digest in the artifact catalog, and no SHA-1 checksum to verify it with @ " + sourceSha1);
+                }
+                if (!expected.equalsIgnoreCase(digests[1])) {
+                    throw new MojoExecutionException("Artifact: " + entry.getCoordinates() + " in: " + source + " does not match its SHA-1 checksum @ " + sourceSha1);
+                }
+            }
+
+            // Checksums first, so the artifact never appears without them.
+            writeChecksum(sha1, digests[1]);
+            writeChecksum(md5, digests[2]);
+            move(temp, target);
+            log.info("Promoted: " + entry.getCoordinates() + " (" + used.name().toLowerCase() + ")");
+        } catch (IOException ioe) {
+            throw new MojoExecutionException("Failed to promote: " + source + " to: " + target, ioe);
+        } finally {
+            temp.delete();
+        }
+    }
+
+    /**
+     * @return The checksum in a checksum file (which may be followed by a file name), or <code>null</code> if there is none.
+     */
+    private static String readChecksum(final File file) throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+        String[] fields = new String(Files.readAllBytes(file.toPath()), UTF_8).trim().split("\\s+");
+        return fields[0].length() > 0 ? fields[0] : null;
+    }
+
+    private static void writeChecksum(final File file, final String checksum) throws IOException {
+        File temp = new File(file.getParentFile(), ".promoting-" + UUID.randomUUID() + "-" + file.getName());
+        try {
+            Files.write(temp.toPath(), checksum.getBytes(UTF_8));
+            move(temp, file);
+        } finally {
+            temp.delete();
+        }
+    }
+
+    private static void move(final File source, final File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException amnse) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Computes several hex encoded digests of a file, in a single pass.
+     */
+    private static String[] digest(final File file, final String... algorithms) throws IOException {
+        MessageDigest[] digests = new MessageDigest[algorithms.length];
+        for (int i = 0; i < algorithms.length; i++) {
+            try {
+                digests[i] = MessageDigest.getInstance(algorithms[i]);
+            } catch (NoSuchAlgorithmException nsae) {
+                throw new IllegalStateException(algorithms[i] + " is not supported by this JVM.", nsae);
+            }
+        }
+
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                for (MessageDigest digest : digests) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+        } finally {
+            in.close();
+        }
+
+        String[] hex = new String[digests.length];
+        for (int i = 0; i < digests.length; i++) {
+            byte[] hash = digests[i].digest();
+            char[] chars = new char[hash.length * 2];
+            for (int j = 0; j < hash.length; j++) {
+                chars[j * 2] = HEX[(hash[j] >> 4) & 0xF];
+                chars[j * 2 + 1] = HEX[hash[j] & 0xF];
+            }
+            hex[i] = new String(chars);
+        }
+        return hex;
+    }
+
+    /**
+     * @return The path of a (release) artifact within a repository using the default layout.
+     */
+    private static String pathOf(final Artifact artifact) {
+        StringBuilder path = new StringBuilder(128);
+        path.append(artifact.getGroupId().replace('.', '/')).append('/');
+        path.append(artifact.getArtifactId()).append('/');
+        path.append(artifact.getBaseVersion()).append('/');
+        path.append(artifact.getArtifactId()).append('-').append(artifact.getVersion());
+        if (artifact.getClassifier().length() > 0) {
+            path.append('-').append(artifact.getClassifier());
+        }
+        path.append('.').append(artifact.getExtension());
+        return path.toString();
+    }
+
+    /**
+     * @return The directory of a <code>file://</code> repository with the default layout, or <code>null</code>.
+     */
+    private static File directoryOf(final RemoteRepository repository) {
+        if (!"default".equals(repository.getContentType()) || !"file".equalsIgnoreCase(repository.getProtocol())) {
+            return null;
+        }
+        try {
+            return new File(new URI(repository.getUrl()));
+        } catch (Exception ex) {
+            // Not a URL File can represent (ex: a relative path), resolve and deploy through the repository system.
+            return null;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.e_gineering.maven.gitflowhelper;
 
+import com.e_gineering.maven.gitflowhelper.git.GitRepositoryReader;
 import org.apache.commons.lang.StringUtils;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.project.MavenProject;
@@ -12,6 +13,8 @@ import org.apache.maven.scm.provider.git.gitexe.command.branch.GitBranchCommand;
 import org.apache.maven.scm.provider.git.repository.GitScmProviderRepository;
 import org.apache.maven.scm.repository.ScmRepository;
 
+import java.io.IOException;
+
 public abstract class ScmUtils {
 
     public static final String DEFAULT_URL_EXPRESSION = "${env.GIT_URL}";
@@ -61,6 +64,12 @@ public abstract class ScmUtils {
                 ScmProvider provider = scmManager.getProviderByRepository(repository);
 
                 if (GitScmProviderRepository.PROTOCOL_GIT.equals(provider.getScmType())) {
+                    // Read the branch straight from the .git directory, only forking git if that isn't possible.
+                    String branch = readCurrentBranch(project, log);
+                    if (branch != null) {
+                        return branch;
+                    }
+
                     ScmFileSet fileSet = new ScmFileSet(project.getBasedir());
                     return GitBranchCommand.getCurrentBranch(new ScmLogDispatcher(), (GitScmProviderRepository) repository.getProviderRepository(), fileSet);
                 } else {
@@ -74,4 +83,25 @@ public abstract class ScmUtils {
         log.debug("Git branch unresolvable from Project SCM definition, defaulting to " + DEFAULT_BRANCH_EXPRESSION);
         return DEFAULT_BRANCH_EXPRESSION;
     }
+
+    /**
+     * Reads the current git branch for the project directly from the repository metadata on disk.
+     *
+     * @param project The Current maven Project
+     * @param log     A Log to write to
+     * @return The current git branch name, or <code>null</code> if it could not be read.
+     */
+    private static String readCurrentBranch(final MavenProject project, final Log log) {
+        try {
+            GitRepositoryReader reader = GitRepositoryReader.find(project.getBasedir());
+            if (reader != null) {
+                String branch = reader.getCurrentBranch();
+                log.debug("Read git branch: '" + branch + "' from: " + reader.getGitDir());
+                return branch;
+            }
+        } catch (IOException ioe) {
+            log.debug("Unable to read git branch from repository metadata, falling back to git executable.", ioe);
+        }
+        return null;
+    }
 }
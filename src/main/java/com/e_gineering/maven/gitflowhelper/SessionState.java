@@ -0,0 +1,49 @@
+package com.e_gineering.maven.gitflowhelper;
+
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.SessionData;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Holds state which is shared between the build extension and every mojo execution for the lifetime of a single
+ * Maven session.
+ * <p/>
+ * State is kept in the repository session's {@link SessionData}, which is shared by the build extension, every
+ * mojo execution in the reactor, and any session copies made from it.
+ */
+abstract class SessionState {
+
+    private static final String SESSION_KEY = SessionState.class.getName();
+
+    /**
+     * Returns the (thread safe) state map for the given session, creating it if it does not yet exist.
+     *
+     * @param session The current repository session
+     * @return The state map shared by the reactor
+     */
+    @SuppressWarnings("unchecked")
+    static ConcurrentMap<Object, Object> of(final RepositorySystemSession session) {
+        SessionData data = session.getData();
+        ConcurrentMap<Object, Object> state = (ConcurrentMap<Object, Object>) data.get(SESSION_KEY);
+        while (state == null) {
+            data.set(SESSION_KEY, null, new ConcurrentHashMap<Object, Object>());
+            state = (ConcurrentMap<Object, Object>) data.get(SESSION_KEY);
+        }
+        return state;
+    }
+
+    /**
+     * Returns a value from the state of the given session, without creating the state if it does not yet exist.
+     *
+     * @param session The current repository session
+     * @param key     The key of the value
+     * @return The value, or <code>null</code> if there is none
+     */
+    @SuppressWarnings("unchecked")
+    static Object peek(final RepositorySystemSession session, final Object key) {
+        ConcurrentMap<Object, Object> state = (ConcurrentMap<Object, Object>) session.getData().get(SESSION_KEY);
+        return state == null ? null : state.get(key);
+    }
+}
@@ -1,5 +1,8 @@
 package com.e_gineering.maven.gitflowhelper;
 
+import com.e_gineering.maven.gitflowhelper.properties.EnvironmentProperties;
+import com.e_gineering.maven.gitflowhelper.properties.PropertyFileCache;
+import com.e_gineering.maven.gitflowhelper.properties.PropertyGraph;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
@@ -7,9 +10,12 @@ import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 /**
@@ -104,6 +110,7 @@ public class SetPropertiesMojo extends AbstractGitflowBranchMojo {
 
     /**
      * Scope in which to set the properties. default is "project", set to "system" in order to set system-level properties.
+     * System-level properties are shared by every module built in the same JVM, use "project" to keep them per module.
      */
     @Parameter(property = "scope", defaultValue = "project")
     private String scope;
@@ -120,6 +127,14 @@ public class SetPropertiesMojo extends AbstractGitflowBranchMojo {
     @Parameter(property = "keyPrefix", defaultValue = "")
     private String keyPrefix = "";
 
+    /**
+     * Resolve all the properties being set as one set, in dependency order, rather than one at a time. Properties
+     * referencing each other are then resolved exactly once regardless of their order, and every circular definition
+     * in the set is reported at once.
+     */
+    @Parameter(property = "resolveInBulk", defaultValue = "false")
+    private boolean resolveInBulk;
+
 
     @Override
     protected void execute(final GitBranchType type, final String gitBranch, final String branchPattern) throws MojoExecutionException, MojoFailureException {
@@ -166,50 +181,111 @@ public class SetPropertiesMojo extends AbstractGitflowBranchMojo {
         setProperties(toInject);
 
         if (toLoad != null) {
-            toInject = new Properties();
-            FileInputStream fis = null;
+            toInject = null;
             try {
                 getLog().info("Loading properties from: " + toLoad.getCanonicalPath());
-                fis = new FileInputStream(toLoad);
-                toInject.load(fis);
+                toInject = PropertyFileCache.load(toLoad);
             } catch (IOException ioe) {
                 getLog().error("Could not load from : " + toLoad.getAbsolutePath(), ioe);
-            } finally {
-                if (fis != null) {
-                    try {
-                        fis.close();
-                    } catch (IOException ioe) {
-                    }
-                    fis = null;
-                }
             }
             setProperties(toInject);
         }
     }
 
-    public void setProperties(Properties toInject) {
+    public void setProperties(Properties toInject) throws MojoFailureException {
         if (toInject == null) {
             return;
         }
         getLog().info("Setting " + toInject.size() + " properties...");
 
+        if (resolveInBulk) {
+            setPropertiesInBulk(toInject);
+            return;
+        }
+
+        // Properties set earlier in the batch are visible to the properties resolved after them.
+        Properties resolved = new Properties(project.getProperties());
+        Map<String, String> batch = new LinkedHashMap<String, String>();
         for (Enumeration<?> propertyNames = toInject.propertyNames(); propertyNames.hasMoreElements(); ) {
             String propertyName = propertyNames.nextElement().toString();
 
-            String key = keyPrefix + resolveExpression(propertyName);
-            String value = resolveExpression(toInject.getProperty(propertyName));
+            String key = keyPrefix + resolveExpression(propertyName, resolved);
+            String value = resolveExpression(toInject.getProperty(propertyName), resolved);
 
-            getLog().debug("  " + key + " = " + value);
+            resolved.setProperty(key, value);
+            batch.put(key, value);
+        }
+
+        publish(batch);
+    }
+
+    /**
+     * Resolves the given properties as a dependency graph, so that every property is resolved after the properties
+     * (of the same set) it references, then sets them in that order.
+     */
+    private void setPropertiesInBulk(Properties toInject) throws MojoFailureException {
+        Map<String, String> unresolved = new LinkedHashMap<String, String>();
+        for (Enumeration<?> propertyNames = toInject.propertyNames(); propertyNames.hasMoreElements(); ) {
+            String propertyName = propertyNames.nextElement().toString();
+            unresolved.put(keyPrefix + resolveExpression(propertyName), toInject.getProperty(propertyName));
+        }
 
-            Object replaced;
-            if ("system".equalsIgnoreCase(scope)) {
-                replaced = System.setProperty(key, value);
-            } else {
-                replaced = project.getProperties().setProperty(key, value);
+        List<String> order;
+        try {
+            order = PropertyGraph.resolutionOrder(unresolved, project.getProperties(), EnvironmentProperties.getInstance());
+        } catch (IllegalArgumentException iae) {
+            throw new MojoFailureException(iae.getMessage(), iae);
+        }
+
+        // Properties of the set take precedence over the existing project properties while resolving each other.
+        Properties resolved = new Properties(project.getProperties());
+        for (String key : order) {
+            resolved.setProperty(key, resolveExpression(unresolved.get(key), resolved));
+        }
+
+        Map<String, String> batch = new LinkedHashMap<String, String>();
+        for (String key : order) {
+            batch.put(key, resolved.getProperty(key));
+        }
+
+        publish(batch);
+    }
+
+    /**
+     * Publishes the fully resolved batch of properties. Project properties are set with a single <code>putAll</code>.
+     * System properties are set with <code>System.setProperty</code>, so they are visible to every module (and
+     * everything else) in the JVM.
+     */
+    private void publish(Map<String, String> batch) {
+        Map<String, String> replaced;
+        if ("system".equalsIgnoreCase(scope)) {
+            replaced = new HashMap<String, String>();
+            for (Map.Entry<String, String> entry : batch.entrySet()) {
+                String previous = System.setProperty(entry.getKey(), entry.getValue());
+                if (previous != null) {
+                    replaced.put(entry.getKey(), previous);
+                }
+            }
+        } else {
+            Properties projectProperties = project.getProperties();
+            replaced = new HashMap<String, String>();
+            synchronized (projectProperties) {
+                for (String key : batch.keySet()) {
+                    String previous = projectProperties.getProperty(key);
+                    if (previous != null) {
+                        replaced.put(key, previous);
+                    }
+                }
+                projectProperties.putAll(batch);
             }
+        }
 
-            if (replaced != null) {
-                getLog().debug("   replaced previous value : " + replaced);
+        if (getLog().isDebugEnabled()) {
+            for (Map.Entry<String, String> entry : batch.entrySet()) {
+                getLog().debug("  " + entry.getKey() + " = " + entry.getValue());
+                if (replaced.containsKey(entry.getKey())) {
+                    getLog().debug("   replaced previous value : " + replaced.get(entry.getKey()));
+                }
             }
         }
     }
@@ -0,0 +1,190 @@
+package com.e_gineering.maven.gitflowhelper;
+
+import org.apache.maven.plugin.logging.Log;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.repository.LocalArtifactRequest;
+import org.eclipse.aether.repository.LocalArtifactResult;
+import org.eclipse.aether.repository.LocalRepositoryManager;
+import org.eclipse.aether.repository.RemoteRepository;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An index of the artifacts in a local repository which were provided by the stage repository.
+ * <p/>
+ * Asking the local repository manager where an artifact came from reads the <code>_remote.repositories</code> file of
+ * its directory. The index remembers each answer along with the modification times of the artifact file and its
+ * <code>_remote.repositories</code> file, so later lookups only need to check that neither has changed. The index is
+ * shared by every module of the session, and persisted in the local repository between builds.
+ */
+final class StageArtifactIndex {
+
+    private static final String INDEX_DIRECTORY = ".gitflow-helper";
+
+    private static final String TRACKING_FILE = "_remote.repositories";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File file;
+
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+    private boolean dirty;
+
+    private StageArtifactIndex(final File file) {
+        this.file = file;
+    }
+
+    /**
+     * Returns the index of the given local repository and stage repository, loading it if this is the first module to
+     * ask for it.
+     *
+     * @param session                The current repository session
+     * @param localRepositoryManager The local repository to index
+     * @param stageRepository        The stage repository
+     * @param log                    A Log to write to
+     * @return The index
+     */
+    static StageArtifactIndex obtain(final RepositorySystemSession session, final LocalRepositoryManager localRepositoryManager,
+                                     final RemoteRepository stageRepository, final Log log) {
+        File basedir = localRepositoryManager.getRepository().getBasedir();
+        File file = new File(new File(basedir, INDEX_DIRECTORY), "stage-" + stageRepository.getId().replaceAll("[^A-Za-z0-9._-]", "_") + ".idx");
+
+        ConcurrentMap<Object, Object> state = SessionState.of(session);
+        String key = StageArtifactIndex.class.getName() + ":" + file.getAbsolutePath();
+        StageArtifactIndex index = (StageArtifactIndex) state.get(key);
+        if (index == null) {
+            StageArtifactIndex loaded = new StageArtifactIndex(file);
+            loaded.load(log);
+            index = (StageArtifactIndex) state.putIfAbsent(key, loaded);
+            if (index == null) {
+                index = loaded;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Determines whether an artifact in the local repository was provided by the stage repository.
+     *
+     * @param session                The repository session
+     * @param localRepositoryManager The local repository
+     * @param artifact               The artifact
+     * @param stageRepositories      The stage repository
+     * @return <code>true</code> if the artifact is in the local repository, and came from stage
+     */
+    synchronized boolean isFromStage(final RepositorySystemSession session, final LocalRepositoryManager localRepositoryManager,
+                                     final Artifact artifact, final List<RemoteRepository> stageRepositories) {
+        String path = localRepositoryManager.getPathForLocalArtifact(artifact);
+        File artifactFile = new File(localRepositoryManager.getRepository().getBasedir(), path);
+        long artifactModified = artifactFile.lastModified();
+        long trackingModified = new File(artifactFile.getParentFile(), TRACKING_FILE).lastModified();
+
+        Entry entry = entries.get(path);
+        if (entry == null || entry.artifactModified != artifactModified || entry.trackingModified != trackingModified) {
+            LocalArtifactResult localResult = localRepositoryManager.find(session, new LocalArtifactRequest(artifact, stageRepositories, null));
+
+            // If the result has a file... and the getRepository() matched the stage repo id...
+            entry = new Entry(artifactModified, trackingModified, localResult.getFile() != null && localResult.getRepository() != null);
+            entries.put(path, entry);
+            dirty = true;
+        }
+        return entry.fromStage;
+    }
+
+    /**
+     * Records that an artifact has been purged from the local repository.
+     */
+    synchronized void purged(final LocalRepositoryManager localRepositoryManager, final Artifact artifact) {
+        if (entries.remove(localRepositoryManager.getPathForLocalArtifact(artifact)) != null) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Writes the index, if it has changed since it was loaded or last saved.
+     *
+     * @param log A Log to write to
+     */
+    synchronized void save(final Log log) {
+        if (!dirty) {
+            return;
+        }
+
+        // Write a new file and move it into place, so concurrent builds never read a partial index.
+        File temp = new File(file.getParentFile(), file.getName() + "." + UUID.randomUUID());
+        try {
+            file.getParentFile().mkdirs();
+            PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(temp), UTF_8));
+            try {
+                for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                    writer.println(entry.getKey() + "\t" + entry.getValue().artifactModified + "\t" + entry.getValue().trackingModified + "\t" + (entry.getValue().fromStage ? 1 : 0));
+                }
+            } finally {
+                writer.close();
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            dirty = false;
+        } catch (IOException ioe) {
+            log.warn("Failed to save the stage artifact index: " + file, ioe);
+        } finally {
+            temp.delete();
+        }
+    }
+
+    private void load(final Log log) {
+        if (!file.isFile()) {
+            return;
+        }
+
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF_8));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] fields = line.split("\t");
+                    if (fields.length == 4) {
+                        entries.put(fields[0], new Entry(Long.parseLong(fields[1]), Long.parseLong(fields[2]), "1".equals(fields[3])));
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+            log.debug("Loaded " + entries.size() + " entries from the stage artifact index: " + file);
+        } catch (IOException ioe) {
+            log.warn("Failed to read the stage artifact index: " + file + ", rebuilding it.");
+            entries.clear();
+        } catch (NumberFormatException nfe) {
+            log.warn("Malformed stage artifact index: " + file + ", rebuilding it.");
+            entries.clear();
+        }
+    }
+
+    private static final class Entry {
+        private final long artifactModified;
+        private final long trackingModified;
+        private final boolean fromStage;
+
+        private Entry(final long artifactModified, final long trackingModified, final boolean fromStage) {
+            this.artifactModified = artifactModified;
+            this.trackingModified = trackingModified;
+            this.fromStage = fromStage;
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.e_gineering.maven.gitflowhelper;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.FileUtils;
+import org.eclipse.aether.RepositorySystemSession;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Creates temporary local repositories, and deletes them in the background, so the build doesn't wait for them.
+ * <p/>
+ * One cleaner is kept per Maven session. Directories are deleted one at a time, on a daemon thread which only exists
+ * while there is something to delete. Whatever the session created and hasn't deleted yet is deleted when the session
+ * ends (by the build extension, on Maven 3.2.1 and later).
+ * <p/>
+ * Each temporary repository holds a lock on a marker file for as long as the session owning it uses it. The first time
+ * a session creates a temporary repository, temporary repositories left behind by crashed builds are swept up: those
+ * older than a day whose marker isn't locked by anyone. Directories without a marker are never swept.
+ */
+final class TempRepositoryCleaner {
+
+    /**
+     * The name prefix of temporary local repository directories.
+     */
+    static final String PREFIX = "gitflow-helper-maven-plugin-repo";
+
+    // Locked by the owning build, for as long as the temporary repository is in use.
+    private static final String MARKER = ".in-use";
+
+    private static final String KEY = TempRepositoryCleaner.class.getName();
+
+    // Temporary repositories older than this are assumed to belong to builds which no longer exist.
+    private static final long STALE_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    // How long to wait for pending deletions when the session ends.
+    private static final long CLOSE_TIMEOUT_SECONDS = 60;
+
+    private final ExecutorService executor = new ThreadPoolExecutor(0, 1, 5, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread t = new Thread(runnable, "gitflow-helper-cleaner");
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    private final Map<File, FileLock> owned = new ConcurrentHashMap<File, FileLock>();
+
+    private final Set<File> pending = Collections.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+
+    private final AtomicBoolean swept = new AtomicBoolean();
+
+    private TempRepositoryCleaner() {
+    }
+
+    /**
+     * Returns the cleaner of the current session, creating it if this is the first to ask.
+     *
+     * @param session The current repository session
+     * @return The cleaner
+     */
+    static TempRepositoryCleaner of(final RepositorySystemSession session) {
+        ConcurrentMap<Object, Object> state = SessionState.of(session);
+        TempRepositoryCleaner cleaner = (TempRepositoryCleaner) state.get(KEY);
+        if (cleaner == null) {
+            TempRepositoryCleaner created = new TempRepositoryCleaner();
+            cleaner = (TempRepositoryCleaner) state.putIfAbsent(KEY, created);
+            if (cleaner == null) {
+                cleaner = created;
+            }
+        }
+        return cleaner;
+    }
+
+    /**
+     * Returns the cleaner of the given session, if anything created one.
+     *
+     * @param session The repository session
+     * @return The cleaner, or <code>null</code> if there is none
+     */
+    static TempRepositoryCleaner find(final RepositorySystemSession session) {
+        return (TempRepositoryCleaner) SessionState.peek(session, KEY);
+    }
+
+    /**
+     * Creates a temporary repository, marked as in use until it is deleted (or the session ends).
+     *
+     * @param log A Log to write to
+     * @return The temporary repository directory
+     * @throws IOException If the directory could not be created
+     */
+    File create(final Log log) throws IOException {
+        File directory = Files.createTempDirectory(PREFIX).toFile();
+
+        FileChannel channel = new RandomAccessFile(new File(directory, MARKER), "rw").getChannel();
+        try {
+            owned.put(directory, channel.lock());
+        } catch (IOException ioe) {
+            channel.close();
+            throw ioe;
+        }
+
+        sweep(directory.getParentFile(), log);
+        return directory;
+    }
+
+    /**
+     * Deletes a temporary repository in the background.
+     *
+     * @param directory The temporary repository
+     * @param log       A Log to write to
+     */
+    void delete(final File directory, final Log log) {
+        if (!pending.add(directory)) {
+            return;
+        }
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release(directory);
+                    FileUtils.deleteDirectory(directory);
+                    log.debug("Deleted temporary repository directory: " + directory);
+                } catch (IOException ioe) {
+                    log.warn("Failed to cleanup temporary repository directory: " + directory);
+                } finally {
+                    pending.remove(directory);
+                }
+            }
+        });
+    }
+
+    /**
+     * Finishes the pending deletions, and deletes every temporary repository the session still owns.
+     *
+     * @param log A Log to write to
+     */
+    void close(final Log log) {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("Timed out waiting for temporary repository directories to be deleted.");
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+
+        for (File directory : new ArrayList<File>(owned.keySet())) {
+            try {
+                release(directory);
+                FileUtils.deleteDirectory(directory);
+            } catch (IOException ioe) {
+                log.warn("Failed to cleanup temporary repository directory: " + directory);
+            }
+        }
+    }
+
+    private void release(final File directory) throws IOException {
+        FileLock lock = owned.remove(directory);
+        if (lock != null) {
+            lock.channel().close();
+        }
+    }
+
+    /**
+     * Deletes (in the background) temporary repositories left behind by earlier builds. Only sweeps once per session.
+     */
+    private void sweep(final File parent, final Log log) {
+        if (!swept.compareAndSet(false, true)) {
+            return;
+        }
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final long staleBefore = System.currentTimeMillis() - STALE_MILLIS;
+                File[] candidates = parent.listFiles(new FileFilter() {
+                    @Override
+                    public boolean accept(File file) {
+                        return file.isDirectory() && file.getName().startsWith(PREFIX) && file.lastModified() < staleBefore;
+                    }
+                });
+
+                List<File> stale = new ArrayList<File>();
+                for (File directory : candidates == null ? new File[0] : candidates) {
+                    if (!owned.containsKey(directory) && abandoned(directory)) {
+                        stale.add(directory);
+                    }
+                }
+
+                for (File directory : stale) {
+                    try {
+                        log.debug("Deleting stale temporary repository directory: " + directory);
+                        FileUtils.deleteDirectory(directory);
+                    } catch (IOException ioe) {
+                        log.debug("Failed to delete stale temporary repository directory: " + directory);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * @return <code>true</code> if the directory has a marker, which no build (in any process) holds the lock of.
+     */
+    private static boolean abandoned(final File directory) {
+        File marker = new File(directory, MARKER);
+        if (!marker.isFile()) {
+            return false;
+        }
+
+        try {
+            FileChannel channel = new RandomAccessFile(marker, "rw").getChannel();
+            try {
+                FileLock lock = channel.tryLock();
+                if (lock == null) {
+                    return false;
+                }
+                lock.release();
+                return true;
+            } catch (OverlappingFileLockException ofle) {
+                // Held by another session in this JVM.
+                return false;
+            } finally {
+                channel.close();
+            }
+        } catch (IOException ioe) {
+            return false;
+        }
+    }
+}
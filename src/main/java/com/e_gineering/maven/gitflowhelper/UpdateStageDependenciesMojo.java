@@ -1,30 +1,49 @@
 package com.e_gineering.maven.gitflowhelper;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.DefaultDependencyResolutionRequest;
 import org.apache.maven.project.DependencyResolutionException;
 import org.apache.maven.project.DependencyResolutionResult;
 import org.apache.maven.project.ProjectDependenciesResolver;
 import org.eclipse.aether.DefaultRepositoryCache;
 import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositorySystemSession;
 import org.eclipse.aether.graph.Dependency;
-import org.eclipse.aether.repository.LocalArtifactRequest;
-import org.eclipse.aether.repository.LocalArtifactResult;
+import org.eclipse.aether.repository.LocalArtifactRegistration;
+import org.eclipse.aether.repository.LocalRepository;
 import org.eclipse.aether.repository.LocalRepositoryManager;
+import org.eclipse.aether.repository.NoLocalRepositoryManagerException;
 import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+import org.eclipse.aether.resolution.ArtifactResult;
 
 import java.io.File;
-import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Forces a re-resolution of all dependency artifacts which were resolved from the 'stage' remote repository.
+ * <p/>
+ * Purged artifacts are re-resolved directly (preferring the stage repository, using the configured purge threads and
+ * resolution retries), rather than by resolving the whole dependency graph again. The old files are only replaced once their
+ * fresh copies have resolved, so concurrent builds sharing the local repository never find them missing.
  */
 @Mojo(name = "update-stage-dependencies", defaultPhase = LifecyclePhase.INITIALIZE)
 public class UpdateStageDependenciesMojo extends AbstractGitflowBasedRepositoryMojo {
@@ -32,6 +51,12 @@ public class UpdateStageDependenciesMojo extends AbstractGitflowBasedRepositoryM
     @Component
     ProjectDependenciesResolver dependenciesResolver;
 
+    /**
+     * The number of purged artifacts to re-resolve concurrently.
+     */
+    @Parameter(property = "purgeThreads", defaultValue = "4")
+    int purgeThreads = 4;
+
     @Override
     protected void execute(GitBranchType type, String gitBranch, String branchPattern) throws MojoExecutionException, MojoFailureException {
         getLog().debug("update-stage-dependencies setting up Repository session...");
@@ -45,50 +70,126 @@ public class UpdateStageDependenciesMojo extends AbstractGitflowBasedRepositoryM
         getLog().debug("configuring stage as the remote repository for artifact resolution requests...");
         List<RemoteRepository> stageRepo = Arrays.asList(getRepository(stageDeploymentRepository));
 
-        boolean itemsPurged = false;
+        // Purged artifacts are resolved from stage first, then from wherever else the project resolves from.
+        List<RemoteRepository> reresolveRepos = new ArrayList<RemoteRepository>(stageRepo);
+        reresolveRepos.addAll(project.getRemoteProjectRepositories());
+
+        List<ArtifactRequest> purged = new ArrayList<ArtifactRequest>();
+        StageArtifactIndex stageIndex = StageArtifactIndex.obtain(session, localRepositoryManager, stageRepo.get(0), getLog());
 
         try {
-            DependencyResolutionResult depencencyResult = dependenciesResolver.resolve(
-                    new DefaultDependencyResolutionRequest(project, reresolveSession));
-
-            for (Dependency dependency : depencencyResult.getResolvedDependencies()) {
-                if (!dependency.getArtifact().isSnapshot()) {
-                    // Find the artifact in the local repo, and if it came from the 'stageRepo', populate that info
-                    // as the 'repository' on the artifact.
-                    LocalArtifactResult localResult = localRepositoryManager.find(reresolveSession,
-                            new LocalArtifactRequest(dependency.getArtifact(), stageRepo, null));
-
-                    // If the result has a file... and the getRepository() matched the stage repo id...
-                    if (localResult.getFile() != null && localResult.getRepository() != null) {
-                        getLog().info("Purging: " + dependency + " from remote repository: " + localResult.getRepository() + ".");
-                        File deleteTarget = new File(localRepositoryManager.getRepository().getBasedir(), localRepositoryManager.getPathForLocalArtifact(dependency.getArtifact()));
-
-                        if (deleteTarget.isDirectory()) {
-                            try {
-                                FileUtils.deleteDirectory(deleteTarget);
-                            } catch (IOException ioe) {
-                                getLog().warn("Failed to purge stage artifact from local repository: " + deleteTarget, ioe);
-                            }
-                        } else if (!deleteTarget.delete()) {
-                            getLog().warn("Failed to purge stage artifact from local repository: " + deleteTarget);
+            try {
+                DependencyResolutionResult depencencyResult = dependenciesResolver.resolve(
+                        new DefaultDependencyResolutionRequest(project, reresolveSession));
+
+                for (Dependency dependency : depencencyResult.getResolvedDependencies()) {
+                    if (!dependency.getArtifact().isSnapshot()) {
+                        // Find the artifact in the local repo (through the index), and check whether it came from the 'stageRepo'.
+                        if (stageIndex.isFromStage(reresolveSession, localRepositoryManager, dependency.getArtifact(), stageRepo)) {
+                            getLog().info("Purging: " + dependency + " from remote repository: " + stageRepo.get(0) + ".");
+                            purged.add(new ArtifactRequest(dependency.getArtifact().setFile(null), reresolveRepos, null));
                         }
-                        itemsPurged = true;
                     }
                 }
+            } catch (DependencyResolutionException dre) {
+                throw new MojoExecutionException("Initial dependency resolution to resolve dependencies which may have been provided by the 'stage' repository failed.", dre);
+            }
+
+            // Only the purged artifacts changed, so only they need resolving again, not the whole dependency graph.
+            if (!purged.isEmpty()) {
+                getLog().info("Resolving " + purged.size() + " purged dependencies...");
+                purge(reresolveSession, purged, stageIndex);
+                getLog().info("All stage dependencies purged and re-resolved.");
+            }
+        } finally {
+            stageIndex.save(getLog());
+        }
+    }
+
+    /**
+     * Replaces stage artifacts in the local repository with freshly resolved copies, concurrently.
+     * <p/>
+     * Other builds may be using the same local repository, so artifacts are never deleted in place. Each artifact is
+     * resolved into a scratch repository next to the local repository, and then moved over the old file in a single
+     * step. Only the move, and its registration with the local repository, hold a (cross-process) lock on the
+     * artifact's coordinates.
+     */
+    private void purge(final DefaultRepositorySystemSession reresolveSession, final List<ArtifactRequest> purged,
+                       final StageArtifactIndex stageIndex) throws MojoExecutionException {
+        final LocalRepositoryManager localRepositoryManager = reresolveSession.getLocalRepositoryManager();
+        File helperDirectory = new File(localRepositoryManager.getRepository().getBasedir(), ".gitflow-helper");
+        final ArtifactLocks locks = new ArtifactLocks(new File(helperDirectory, "locks"));
+        File scratchRepo = new File(new File(helperDirectory, "tmp"), UUID.randomUUID().toString());
+
+        final DefaultRepositorySystemSession scratchSession = new DefaultRepositorySystemSession(reresolveSession);
+        try {
+            scratchSession.setLocalRepositoryManager(localRepositoryManagerFactory.newInstance(scratchSession, new LocalRepository(scratchRepo)));
+        } catch (NoLocalRepositoryManagerException nlrme) {
+            throw new MojoExecutionException("Failed to create a scratch repository to re-resolve stage artifacts into.", nlrme);
+        }
+
+        final ParallelArtifactResolver resolver = new ParallelArtifactResolver(artifactResolver, 1, resolutionRetries, getLog());
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(purgeThreads, purged.size())));
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>(purged.size());
+            for (final ArtifactRequest request : purged) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        replace(scratchSession, localRepositoryManager, resolver, locks, request);
+                        stageIndex.purged(localRepositoryManager, request.getArtifact());
+                        return null;
+                    }
+                }));
+            }
+
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException ee) {
+                    throw new MojoExecutionException("Post-purge dependency resolution failed!", ee.getCause());
+                }
             }
-        } catch (DependencyResolutionException dre) {
-            throw new MojoExecutionException("Initial dependency resolution to resolve dependencies which may have been provided by the 'stage' repository failed.", dre);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while re-resolving stage dependencies.", ie);
+        } finally {
+            executor.shutdownNow();
+            TempRepositoryCleaner.of(session).delete(scratchRepo, getLog());
+        }
+    }
+
+    private void replace(final RepositorySystemSession scratchSession, final LocalRepositoryManager localRepositoryManager,
+                         final ParallelArtifactResolver resolver, final ArtifactLocks locks, final ArtifactRequest request) throws Exception {
+        // Only this build uses the scratch repository, so the download itself needs no lock.
+        ArtifactResult result = resolver.resolveArtifact(scratchSession, request);
+        if (!result.isResolved()) {
+            throw new ArtifactResolutionException(Collections.singletonList(result));
         }
 
+        File target = new File(localRepositoryManager.getRepository().getBasedir(), localRepositoryManager.getPathForLocalArtifact(request.getArtifact()));
+        target.getParentFile().mkdirs();
 
-        if (itemsPurged) {
+        ArtifactLocks.Held lock = locks.lock(request.getArtifact().toString());
+        try {
+            if (target.isDirectory()) {
+                // Renamed aside in one step, to be deleted along with the scratch repository.
+                File aside = new File(scratchSession.getLocalRepository().getBasedir(), "replaced-" + UUID.randomUUID());
+                Files.move(target.toPath(), aside.toPath());
+            }
             try {
-                getLog().info("Resolving purged dependencies...");
-                dependenciesResolver.resolve(new DefaultDependencyResolutionRequest(project, reresolveSession));
-                getLog().info("All stage dependencies purged and re-resolved.");
-            } catch (DependencyResolutionException e) {
-                throw new MojoExecutionException("Post-purge dependency resolution failed!", e);
+                Files.move(result.getArtifact().getFile().toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException amnse) {
+                Files.move(result.getArtifact().getFile().toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            // Record where the fresh copy came from, so the local repository tracks it like any other download.
+            if (result.getRepository() instanceof RemoteRepository) {
+                localRepositoryManager.add(scratchSession, new LocalArtifactRegistration(result.getArtifact().setFile(target), (RemoteRepository) result.getRepository(), null));
             }
+        } finally {
+            lock.release();
         }
+        getLog().debug("Replaced: " + target + " with a fresh copy from: " + result.getRepository());
     }
 }
@@ -0,0 +1,212 @@
+package com.e_gineering.maven.gitflowhelper.git;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Reads the current branch of a git working copy directly from the <code>.git</code> directory, without forking the
+ * git executable.
+ * <p/>
+ * Supports plain repositories, <code>.git</code> files (submodules and linked worktrees) pointing at a
+ * <code>gitdir</code>, loose and packed refs, and detached heads. A detached head is resolved to a branch name by
+ * looking for a local branch (or failing that, a remote tracking branch) pointing at the same commit.
+ */
+public class GitRepositoryReader {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String REF_PREFIX = "ref:";
+    private static final String GITDIR_PREFIX = "gitdir:";
+
+    private static final String HEADS = "refs/heads/";
+    private static final String REMOTES = "refs/remotes/";
+
+    // Guards against symbolic refs pointing at each other.
+    private static final int MAX_SYMBOLIC_REF_DEPTH = 5;
+
+    private final File gitDir;
+
+    private final File commonDir;
+
+    /**
+     * Creates a reader for a git directory (the directory containing <code>HEAD</code>).
+     *
+     * @param gitDir The git directory. For linked worktrees, the <code>commondir</code> file is honored.
+     * @throws IOException If the commondir file can not be read
+     */
+    public GitRepositoryReader(final File gitDir) throws IOException {
+        this.gitDir = gitDir;
+
+        File common = new File(gitDir, "commondir");
+        if (common.isFile()) {
+            this.commonDir = resolve(gitDir, readFirstLine(common));
+        } else {
+            this.commonDir = gitDir;
+        }
+    }
+
+    /**
+     * Locates the git directory for the given working copy directory, walking up the directory hierarchy.
+     *
+     * @param directory A directory within a git working copy
+     * @return A reader for the repository, or <code>null</code> if the directory is not within a git working copy
+     * @throws IOException If a <code>.git</code> file could not be read
+     */
+    public static GitRepositoryReader find(final File directory) throws IOException {
+        for (File dir = directory == null ? null : directory.getAbsoluteFile(); dir != null; dir = dir.getParentFile()) {
+            File dotGit = new File(dir, ".git");
+            if (dotGit.isDirectory() && new File(dotGit, "HEAD").isFile()) {
+                return new GitRepositoryReader(dotGit);
+            } else if (dotGit.isFile()) {
+                String line = readFirstLine(dotGit);
+                if (line != null && line.startsWith(GITDIR_PREFIX)) {
+                    return new GitRepositoryReader(resolve(dir, line.substring(GITDIR_PREFIX.length()).trim()));
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The git directory this reader is reading from
+     */
+    public File getGitDir() {
+        return gitDir;
+    }
+
+    /**
+     * Resolves the current branch name.
+     *
+     * @return The name of the current branch (without <code>refs/heads/</code>), the remote tracking branch name
+     * (ex: <code>origin/master</code>) for a detached head which only a remote branch points to, or
+     * <code>null</code> if no branch could be determined.
+     * @throws IOException If the repository can not be read
+     */
+    public String getCurrentBranch() throws IOException {
+        String head = readFirstLine(new File(gitDir, "HEAD"));
+        if (head == null) {
+            return null;
+        }
+
+        if (head.startsWith(REF_PREFIX)) {
+            String ref = head.substring(REF_PREFIX.length()).trim();
+            return ref.startsWith(HEADS) ? ref.substring(HEADS.length()) : null;
+        }
+
+        // Detached HEAD. Find a branch pointing at the same commit.
+        return findBranchForCommit(head.trim());
+    }
+
+    private String findBranchForCommit(final String commit) throws IOException {
+        Map<String, String> refs = readRefs();
+
+        List<String> remoteMatches = new ArrayList<String>();
+        for (Map.Entry<String, String> ref : refs.entrySet()) {
+            if (commit.equalsIgnoreCase(ref.getValue())) {
+                if (ref.getKey().startsWith(HEADS)) {
+                    return ref.getKey().substring(HEADS.length());
+                } else if (ref.getKey().startsWith(REMOTES) && !ref.getKey().endsWith("/HEAD")) {
+                    remoteMatches.add(ref.getKey().substring(REMOTES.length()));
+                }
+            }
+        }
+
+        return remoteMatches.isEmpty() ? null : remoteMatches.get(0);
+    }
+
+    /**
+     * Reads all branch refs (local heads and remotes), loose refs taking precedence over packed refs.
+     *
+     * @return A sorted map of full ref name to commit id
+     * @throws IOException If the refs can not be read
+     */
+    Map<String, String> readRefs() throws IOException {
+        Map<String, String> refs = new TreeMap<String, String>();
+
+        File packedRefs = new File(commonDir, "packed-refs");
+        if (packedRefs.isFile()) {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(packedRefs), UTF_8));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    // Skip the header and peeled tag lines.
+                    if (line.isEmpty() || line.startsWith("#") || line.startsWith("^")) {
+                        continue;
+                    }
+                    int space = line.indexOf(' ');
+                    if (space > 0) {
+                        String name = line.substring(space + 1).trim();
+                        if (name.startsWith(HEADS) || name.startsWith(REMOTES)) {
+                            refs.put(name, line.substring(0, space));
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        }
+
+        readLooseRefs(new File(commonDir, HEADS), HEADS, refs);
+        readLooseRefs(new File(commonDir, REMOTES), REMOTES, refs);
+
+        return refs;
+    }
+
+    private void readLooseRefs(final File directory, final String prefix, final Map<String, String> refs) throws IOException {
+        File[] children = directory.listFiles();
+        if (children == null) {
+            return;
+        }
+
+        for (File child : children) {
+            if (child.isDirectory()) {
+                readLooseRefs(child, prefix + child.getName() + "/", refs);
+            } else {
+                String commit = resolveRef(prefix + child.getName(), 0);
+                if (commit != null) {
+                    refs.put(prefix + child.getName(), commit);
+                }
+            }
+        }
+    }
+
+    private String resolveRef(final String name, final int depth) throws IOException {
+        if (depth > MAX_SYMBOLIC_REF_DEPTH) {
+            return null;
+        }
+
+        File loose = new File(commonDir, name);
+        String value = loose.isFile() ? readFirstLine(loose) : null;
+        if (value == null) {
+            return null;
+        }
+
+        if (value.startsWith(REF_PREFIX)) {
+            return resolveRef(value.substring(REF_PREFIX.length()).trim(), depth + 1);
+        }
+        return value.trim();
+    }
+
+    private static File resolve(final File base, final String path) {
+        File file = new File(path);
+        return file.isAbsolute() ? file : new File(base, path);
+    }
+
+    private static String readFirstLine(final File file) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF_8));
+        try {
+            String line = reader.readLine();
+            return line == null ? null : line.trim();
+        } finally {
+            reader.close();
+        }
+    }
+}
@@ -36,7 +36,7 @@ class CircularDefinitionPreventer {
         }
     }
 
-    private final List<VisitedProperty> entriesVisited = new LinkedList<VisitedProperty>();
+    private final List<VisitedProperty> entriesVisited = new ArrayList<VisitedProperty>();
 
     private final Set<String> keysUsed = new HashSet<String>();
 
@@ -0,0 +1,69 @@
+package com.e_gineering.maven.gitflowhelper.properties;
+
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * A read-only, JVM-wide view of the process environment as {@link Properties}.
+ * <p/>
+ * Unlike <code>CommandLineUtils.getSystemEnvVars()</code>, nothing is copied: every lookup is delegated to
+ * {@link System#getenv(String)}, which reads from the JVM's own immutable environment map (and is case-insensitive
+ * on Windows). Only {@link #getProperty(String)} and {@link #getProperty(String, String)} are supported, which is all
+ * the {@link PropertyResolver} needs. Enumerating the view yields no entries, and any attempt to modify it fails.
+ */
+public final class EnvironmentProperties extends Properties {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final EnvironmentProperties INSTANCE = new EnvironmentProperties();
+
+    private EnvironmentProperties() {
+    }
+
+    /**
+     * @return The shared environment view
+     */
+    public static EnvironmentProperties getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public String getProperty(String key) {
+        return key == null ? null : System.getenv(key);
+    }
+
+    @Override
+    public String getProperty(String key, String defaultValue) {
+        String value = getProperty(key);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public synchronized Object setProperty(String key, String value) {
+        throw new UnsupportedOperationException("The environment is read-only.");
+    }
+
+    @Override
+    public synchronized Object put(Object key, Object value) {
+        throw new UnsupportedOperationException("The environment is read-only.");
+    }
+
+    @Override
+    public synchronized void putAll(Map<?, ?> t) {
+        throw new UnsupportedOperationException("The environment is read-only.");
+    }
+
+    @Override
+    public synchronized Object remove(Object key) {
+        throw new UnsupportedOperationException("The environment is read-only.");
+    }
+
+    @Override
+    public synchronized void clear() {
+        throw new UnsupportedOperationException("The environment is read-only.");
+    }
+
+    private Object readResolve() {
+        return INSTANCE;
+    }
+}
@@ -20,36 +20,60 @@ package com.e_gineering.maven.gitflowhelper.properties;
 
 /**
  * Shamelessly cribbed from https://raw.githubusercontent.com/mojohaus/properties-maven-plugin/master/src/main/java/org/codehaus/mojo/properties/ExpansionBuffer.java
+ * <p/>
+ * Reworked to keep the unresolved text right-aligned in a single <code>char[]</code> with a cursor, so consuming text
+ * advances the cursor and expanding a placeholder value only copies the value in front of it, rather than building
+ * a new String of the whole remainder each time. Placeholder positions are cached between calls, so every character
+ * is only scanned once.
  */
 public class ExpansionBuffer {
+    private static final int UNKNOWN = -2;
+
     private final StringBuilder resolved = new StringBuilder();
 
-    private String unresolved;
+    // The unresolved text occupies [pos, unresolved.length)
+    private char[] unresolved;
+
+    private int pos;
+
+    // Absolute index of the next "${" in the unresolved text, -1 if there is none.
+    private int prefixPos = UNKNOWN;
+
+    // Absolute index of the first "}" following prefixPos, -1 if there is none.
+    private int suffixPos = UNKNOWN;
 
     public ExpansionBuffer(String unresolved) {
-        this.unresolved = unresolved != null ? unresolved : "";
+        this.unresolved = unresolved != null ? unresolved.toCharArray() : new char[0];
+        this.pos = 0;
     }
 
     public boolean hasMoreLegalPlaceholders() {
-        int prefixPos = unresolved.indexOf("${");
-        int suffixPos = unresolved.indexOf("}", prefixPos + 2);
-        return prefixPos >= 0 && suffixPos >= 0;
+        return nextPrefix() >= 0 && nextSuffix() >= 0;
     }
 
     public String extractPropertyKey() {
-        advanceToNextPrefix();
+        int prefix = nextPrefix();
+        int suffix = nextSuffix();
+        if (prefix < 0 || suffix < 0) {
+            throw new IllegalStateException("No legal placeholder remaining in: " + new String(unresolved, pos, unresolved.length - pos));
+        }
 
-        discardPrefix();
+        // Advance to the next prefix, discarding the prefix.
+        resolved.append(unresolved, pos, prefix - pos);
 
-        String key = beforeNextSuffix();
+        String key = new String(unresolved, prefix + 2, suffix - prefix - 2);
 
-        discardToAfterNextSuffix();
+        // Discard to after the next suffix.
+        pos = suffix + 1;
+        prefixPos = UNKNOWN;
+        suffixPos = UNKNOWN;
 
         return key;
     }
 
     public String toString() {
-        return resolved.append(unresolved).toString();
+        return new StringBuilder(resolved.length() + unresolved.length - pos)
+                .append(resolved).append(unresolved, pos, unresolved.length - pos).toString();
     }
 
     public void add(String newKey, String newValue) {
@@ -65,34 +89,71 @@ public class ExpansionBuffer {
     }
 
     private void expandFurther(String value) {
-        unresolved = value + unresolved;
+        int length = value.length();
+        if (length > pos) {
+            // Grow, leaving head room in front of the unresolved text for further expansions.
+            int remaining = unresolved.length - pos;
+            int capacity = Math.max(unresolved.length * 2, remaining + length + 16);
+            char[] grown = new char[capacity];
+            System.arraycopy(unresolved, pos, grown, capacity - remaining, remaining);
+
+            int shift = capacity - unresolved.length;
+            unresolved = grown;
+            pos += shift;
+            prefixPos = prefixPos >= 0 ? prefixPos + shift : prefixPos;
+            suffixPos = suffixPos >= 0 ? suffixPos + shift : suffixPos;
+        }
+
+        int previous = pos;
+        pos -= length;
+        value.getChars(0, length, unresolved, pos);
+
+        // Only the inserted text (and the boundary with what followed it) can hold an earlier prefix.
+        if (prefixPos != UNKNOWN) {
+            int prefix = indexOfPrefix(pos, previous);
+            if (prefix >= 0) {
+                prefixPos = prefix;
+                suffixPos = UNKNOWN;
+            }
+        }
     }
 
     private void skipUnresolvedPlaceholder(String newKey) {
         resolved.append("${").append(newKey).append("}");
     }
 
-    private void discardToAfterNextSuffix() {
-        int propertySuffixPos = unresolved.indexOf("}");
-        unresolved = unresolved.substring(propertySuffixPos + 1);
-    }
-
-    private void advanceToNextPrefix() {
-        resolved.append(beforePrefix());
-    }
-
-    private void discardPrefix() {
-        int propertyPrefixPos = unresolved.indexOf("${");
-        unresolved = unresolved.substring(propertyPrefixPos + 2);
+    private int nextPrefix() {
+        if (prefixPos == UNKNOWN) {
+            prefixPos = indexOfPrefix(pos, unresolved.length);
+        }
+        return prefixPos;
     }
 
-    private String beforePrefix() {
-        int propertyPrefixPos = unresolved.indexOf("${");
-        return unresolved.substring(0, propertyPrefixPos);
+    private int nextSuffix() {
+        if (suffixPos == UNKNOWN) {
+            suffixPos = -1;
+            if (prefixPos >= 0) {
+                for (int i = prefixPos + 2; i < unresolved.length; i++) {
+                    if (unresolved[i] == '}') {
+                        suffixPos = i;
+                        break;
+                    }
+                }
+            }
+        }
+        return suffixPos;
     }
 
-    private String beforeNextSuffix() {
-        int propertySuffixPos = unresolved.indexOf("}");
-        return unresolved.substring(0, propertySuffixPos);
+    /**
+     * @return The index of the first "${" starting in [from, to), or -1.
+     */
+    private int indexOfPrefix(int from, int to) {
+        int last = Math.min(to, unresolved.length - 1);
+        for (int i = from; i < last; i++) {
+            if (unresolved[i] == '$' && unresolved[i + 1] == '{') {
+                return i;
+            }
+        }
+        return -1;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,133 @@
+package com.e_gineering.maven.gitflowhelper.properties;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * An expression compiled into alternating literal and <code>${placeholder}</code> segments, with the last resolution
+ * memoized.
+ * <p/>
+ * A template only resolves the expressions it can resolve exactly as the {@link ExpansionBuffer} would: every
+ * placeholder key must be distinct (repeated keys are reported as circular definitions by the general path), and no
+ * placeholder value may contain a <code>$</code> (which would require re-parsing the expanded text). In any other case
+ * {@link #resolve(Properties, Properties)} returns <code>null</code> and the caller falls back to the general path.
+ * <p/>
+ * The memoized resolution records the value each placeholder resolved to. It is reused as long as every placeholder
+ * still resolves to the same value, so a change to any of the property sources invalidates it.
+ */
+class ExpressionTemplate {
+
+    private final String[] literals;
+
+    private final String[] keys;
+
+    private final boolean simple;
+
+    private volatile Resolution memo;
+
+    private ExpressionTemplate(final String[] literals, final String[] keys, final boolean simple) {
+        this.literals = literals;
+        this.keys = keys;
+        this.simple = simple;
+    }
+
+    /**
+     * Splits the expression into segments, finding placeholders the same way the {@link ExpansionBuffer} does.
+     */
+    static ExpressionTemplate compile(final String expression) {
+        List<String> literals = new ArrayList<String>();
+        List<String> keys = new ArrayList<String>();
+        Set<String> distinct = new HashSet<String>();
+
+        int pos = 0;
+        while (true) {
+            int prefix = expression.indexOf("${", pos);
+            int suffix = prefix >= 0 ? expression.indexOf('}', prefix + 2) : -1;
+            if (prefix < 0 || suffix < 0) {
+                break;
+            }
+
+            literals.add(expression.substring(pos, prefix));
+            keys.add(expression.substring(prefix + 2, suffix));
+            distinct.add(keys.get(keys.size() - 1));
+            pos = suffix + 1;
+        }
+        literals.add(expression.substring(pos));
+
+        return new ExpressionTemplate(literals.toArray(new String[literals.size()]), keys.toArray(new String[keys.size()]),
+                distinct.size() == keys.size());
+    }
+
+    /**
+     * @return The keys of the placeholders in the expression, in order of appearance.
+     */
+    List<String> getKeys() {
+        return Arrays.asList(keys);
+    }
+
+    /**
+     * Resolves the template against the given property sources.
+     *
+     * @return The resolved value, or <code>null</code> if the template can not resolve this expression exactly.
+     */
+    String resolve(final Properties properties, final Properties environment) {
+        if (!simple) {
+            return null;
+        }
+
+        if (keys.length == 0) {
+            return literals[0];
+        }
+
+        String[] values = new String[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            values[i] = PropertyResolver.fromPropertiesThenSystemThenEnvironment(keys[i], properties, environment);
+            if (values[i] != null && values[i].indexOf('$') >= 0) {
+                return null;
+            }
+        }
+
+        Resolution last = memo;
+        if (last != null && last.matches(values)) {
+            return last.result;
+        }
+
+        StringBuilder result = new StringBuilder(literals[0]);
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] != null) {
+                result.append(values[i]);
+            } else {
+                result.append("${").append(keys[i]).append("}");
+            }
+            result.append(literals[i + 1]);
+        }
+
+        last = new Resolution(values, result.toString());
+        memo = last;
+        return last.result;
+    }
+
+    private static class Resolution {
+        private final String[] values;
+
+        private final String result;
+
+        private Resolution(final String[] values, final String result) {
+            this.values = values;
+            this.result = result;
+        }
+
+        private boolean matches(final String[] current) {
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] == null ? current[i] != null : !values[i].equals(current[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.e_gineering.maven.gitflowhelper.properties;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * A JVM-wide cache of parsed property files.
+ * <p/>
+ * Modules commonly inherit the same property file configuration from a parent POM, so the same file would otherwise
+ * be parsed once per module. Files are cached by canonical path and re-parsed only when their size or modification
+ * time changes, for the lifetime of the JVM (which spans multiple builds under a build daemon). Callers receive
+ * read-only {@link Properties}, shared by every caller of the same file.
+ */
+public final class PropertyFileCache {
+
+    // Files at least this large are memory mapped rather than read onto the heap before parsing.
+    private static final long MAP_THRESHOLD = 1024 * 1024;
+
+    private static final ConcurrentMap<String, Entry> CACHE = new ConcurrentHashMap<String, Entry>();
+
+    private PropertyFileCache() {
+    }
+
+    /**
+     * Returns the parsed contents of the given property file, parsing it only if it has not been parsed before or has
+     * changed since.
+     *
+     * @param file The property file to load
+     * @return The (read-only) properties in the file
+     * @throws IOException If the file can not be read
+     */
+    public static Properties load(final File file) throws IOException {
+        String path = file.getCanonicalPath();
+        BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        long size = attributes.size();
+        long modified = attributes.lastModifiedTime().toMillis();
+
+        Entry entry = CACHE.get(path);
+        if (entry == null || entry.size != size || entry.modified != modified) {
+            entry = new Entry(size, modified, parse(file, size));
+            CACHE.put(path, entry);
+        }
+        return entry.properties;
+    }
+
+    private static Properties parse(final File file, final long size) throws IOException {
+        ReadOnlyProperties properties = new ReadOnlyProperties();
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            InputStream in;
+            if (size >= MAP_THRESHOLD) {
+                in = new ByteBufferInputStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            } else {
+                ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    // Read the whole (small) file in as few reads as possible.
+                }
+                in = new ByteArrayInputStream(buffer.array(), 0, buffer.position());
+            }
+            properties.load(in);
+        } finally {
+            raf.close();
+        }
+
+        properties.freeze();
+        return properties;
+    }
+
+    private static class Entry {
+        private final long size;
+        private final long modified;
+        private final Properties properties;
+
+        private Entry(final long size, final long modified, final Properties properties) {
+            this.size = size;
+            this.modified = modified;
+            this.properties = properties;
+        }
+    }
+
+    /**
+     * Properties which can no longer be modified once frozen.
+     */
+    private static class ReadOnlyProperties extends Properties {
+        private static final long serialVersionUID = 1L;
+
+        private volatile boolean frozen;
+
+        private void freeze() {
+            frozen = true;
+        }
+
+        private void checkFrozen() {
+            if (frozen) {
+                throw new UnsupportedOperationException("Cached property files are read-only.");
+            }
+        }
+
+        @Override
+        public synchronized Object put(Object key, Object value) {
+            checkFrozen();
+            return super.put(key, value);
+        }
+
+        @Override
+        public synchronized void putAll(Map<?, ?> t) {
+            checkFrozen();
+            super.putAll(t);
+        }
+
+        @Override
+        public synchronized Object remove(Object key) {
+            checkFrozen();
+            return super.remove(key);
+        }
+
+        @Override
+        public synchronized void clear() {
+            checkFrozen();
+            super.clear();
+        }
+
+        @Override
+        public synchronized Object setProperty(String key, String value) {
+            checkFrozen();
+            return super.setProperty(key, value);
+        }
+
+        @Override
+        public synchronized Object putIfAbsent(Object key, Object value) {
+            checkFrozen();
+            return super.putIfAbsent(key, value);
+        }
+
+        @Override
+        public synchronized boolean remove(Object key, Object value) {
+            checkFrozen();
+            return super.remove(key, value);
+        }
+
+        @Override
+        public synchronized boolean replace(Object key, Object oldValue, Object newValue) {
+            checkFrozen();
+            return super.replace(key, oldValue, newValue);
+        }
+
+        @Override
+        public synchronized Object replace(Object key, Object value) {
+            checkFrozen();
+            return super.replace(key, value);
+        }
+
+        @Override
+        public synchronized void replaceAll(BiFunction<? super Object, ? super Object, ?> function) {
+            checkFrozen();
+            super.replaceAll(function);
+        }
+
+        @Override
+        public synchronized Object compute(Object key, BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+            checkFrozen();
+            return super.compute(key, remappingFunction);
+        }
+
+        @Override
+        public synchronized Object computeIfAbsent(Object key, Function<? super Object, ?> mappingFunction) {
+            checkFrozen();
+            return super.computeIfAbsent(key, mappingFunction);
+        }
+
+        @Override
+        public synchronized Object computeIfPresent(Object key, BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+            checkFrozen();
+            return super.computeIfPresent(key, remappingFunction);
+        }
+
+        @Override
+        public synchronized Object merge(Object key, Object value, BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+            checkFrozen();
+            return super.merge(key, value, remappingFunction);
+        }
+    }
+
+    /**
+     * Streams the contents of a (memory mapped) buffer.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+        private final MappedByteBuffer buffer;
+
+        private ByteBufferInputStream(final MappedByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
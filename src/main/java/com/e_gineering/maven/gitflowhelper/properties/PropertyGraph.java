@@ -0,0 +1,212 @@
+package com.e_gineering.maven.gitflowhelper.properties;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * The dependency graph of a set of properties which may reference each other through <code>${key}</code>
+ * placeholders in their values.
+ * <p/>
+ * Used to resolve a whole set of properties at once: {@link #resolutionOrder(Map)} orders the properties so that
+ * every property comes after the properties it references, and detects every circular definition in the set in a
+ * single O(V+E) pass (Tarjan's strongly connected components).
+ * <p/>
+ * A property referencing its own key (ex: <code>path=${path}:/opt/bin</code>) is only circular when nothing else
+ * defines that key. Otherwise it refers to the existing value, the way it does when properties are resolved one at a
+ * time.
+ */
+public final class PropertyGraph {
+
+    private PropertyGraph() {
+    }
+
+    /**
+     * Orders the given properties so each property is preceded by the properties (of the same set) it references.
+     *
+     * @param properties The unresolved properties, by key. Iteration order is preserved where there are no dependencies.
+     * @return The keys, in resolution order
+     * @throws IllegalArgumentException when properties are circularly defined, describing every cycle found
+     */
+    public static List<String> resolutionOrder(final Map<String, String> properties) {
+        return resolutionOrder(properties, new Properties(), null);
+    }
+
+    /**
+     * Orders the given properties so each property is preceded by the properties (of the same set) it references.
+     * Self references to keys which are already defined are resolved against the existing value, rather than reported
+     * as circular.
+     *
+     * @param properties  The unresolved properties, by key. Iteration order is preserved where there are no dependencies.
+     * @param existing    The properties the set is resolved against (ex: the project properties)
+     * @param environment environment variables
+     * @return The keys, in resolution order
+     * @throws IllegalArgumentException when properties are circularly defined, describing every cycle found
+     */
+    public static List<String> resolutionOrder(final Map<String, String> properties, final Properties existing, final Properties environment) {
+        final String[] keys = properties.keySet().toArray(new String[properties.size()]);
+        Map<String, Integer> nodes = new HashMap<String, Integer>(keys.length * 2);
+        for (int i = 0; i < keys.length; i++) {
+            nodes.put(keys[i], i);
+        }
+
+        // Edges point from a property to the properties it references.
+        int[][] edges = new int[keys.length][];
+        for (int i = 0; i < keys.length; i++) {
+            Set<Integer> references = new LinkedHashSet<Integer>();
+            String value = properties.get(keys[i]);
+            if (value != null) {
+                for (String key : ExpressionTemplate.compile(value).getKeys()) {
+                    Integer node = nodes.get(key);
+                    // A reference to its own key, which is defined elsewhere, is resolved against that definition.
+                    if (node != null && node == i && PropertyResolver.fromPropertiesThenSystemThenEnvironment(key, existing, environment) != null) {
+                        continue;
+                    }
+                    if (node != null) {
+                        references.add(node);
+                    }
+                }
+            }
+            edges[i] = new int[references.size()];
+            int e = 0;
+            for (Integer node : references) {
+                edges[i][e++] = node;
+            }
+        }
+
+        // Tarjan's algorithm, iteratively. Components are completed after every component they reference, which is
+        // exactly the order they need to be resolved in.
+        int[] index = new int[keys.length];
+        int[] low = new int[keys.length];
+        int[] nextEdge = new int[keys.length];
+        boolean[] onStack = new boolean[keys.length];
+        Arrays.fill(index, -1);
+
+        Deque<Integer> stack = new ArrayDeque<Integer>();
+        Deque<Integer> calls = new ArrayDeque<Integer>();
+        List<String> order = new ArrayList<String>(keys.length);
+        List<String> cycles = new ArrayList<String>();
+        int counter = 0;
+
+        for (int root = 0; root < keys.length; root++) {
+            if (index[root] != -1) {
+                continue;
+            }
+
+            index[root] = low[root] = counter++;
+            stack.push(root);
+            onStack[root] = true;
+            calls.push(root);
+
+            while (!calls.isEmpty()) {
+                int v = calls.peek();
+                if (nextEdge[v] < edges[v].length) {
+                    int w = edges[v][nextEdge[v]++];
+                    if (index[w] == -1) {
+                        index[w] = low[w] = counter++;
+                        stack.push(w);
+                        onStack[w] = true;
+                        calls.push(w);
+                    } else if (onStack[w]) {
+                        low[v] = Math.min(low[v], index[w]);
+                    }
+                } else {
+                    calls.pop();
+                    if (!calls.isEmpty()) {
+                        int parent = calls.peek();
+                        low[parent] = Math.min(low[parent], low[v]);
+                    }
+
+                    if (low[v] == index[v]) {
+                        List<Integer> component = new ArrayList<Integer>();
+                        int w;
+                        do {
+                            w = stack.pop();
+                            onStack[w] = false;
+                            component.add(w);
+                        } while (w != v);
+
+                        if (component.size() > 1 || references(edges[v], v)) {
+                            cycles.add(describeCycle(v, component, edges, keys, properties));
+                        } else {
+                            order.add(keys[v]);
+                        }
+                    }
+                }
+            }
+        }
+
+        if (!cycles.isEmpty()) {
+            StringBuilder buffer = new StringBuilder("Circular property definition");
+            buffer.append(cycles.size() > 1 ? "s: " : ": ");
+            for (int i = 0; i < cycles.size(); i++) {
+                if (i > 0) {
+                    buffer.append("; ");
+                }
+                buffer.append(cycles.get(i));
+            }
+            throw new IllegalArgumentException(buffer.toString());
+        }
+
+        return order;
+    }
+
+    private static boolean references(final int[] edges, final int node) {
+        for (int edge : edges) {
+            if (edge == node) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds the shortest cycle through <code>start</code> within its component, and formats it like the
+     * {@link CircularDefinitionPreventer} does: <code>a=${b} -> b=${a} -> a=${b}</code>
+     */
+    private static String describeCycle(final int start, final List<Integer> component, final int[][] edges, final String[] keys, final Map<String, String> properties) {
+        Set<Integer> members = new LinkedHashSet<Integer>(component);
+        Map<Integer, Integer> parents = new HashMap<Integer, Integer>();
+        Deque<Integer> queue = new ArrayDeque<Integer>();
+        queue.add(start);
+
+        int last = start;
+        search:
+        while (!queue.isEmpty()) {
+            int v = queue.poll();
+            for (int w : edges[v]) {
+                if (w == start) {
+                    last = v;
+                    break search;
+                }
+                if (members.contains(w) && !parents.containsKey(w)) {
+                    parents.put(w, v);
+                    queue.add(w);
+                }
+            }
+        }
+
+        List<Integer> path = new ArrayList<Integer>();
+        for (int v = last; v != start; v = parents.get(v)) {
+            path.add(0, v);
+        }
+        path.add(0, start);
+        path.add(start);
+
+        StringBuilder buffer = new StringBuilder();
+        for (int i = 0; i < path.size(); i++) {
+            if (i > 0) {
+                buffer.append(" -> ");
+            }
+            buffer.append(keys[path.get(i)]).append("=").append(properties.get(keys[path.get(i)]));
+        }
+        return buffer.toString();
+    }
+}
@@ -20,12 +20,19 @@ package com.e_gineering.maven.gitflowhelper.properties;
  */
 
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Shamelessly cribbed from https://raw.githubusercontent.com/mojohaus/properties-maven-plugin/master/src/main/java/org/codehaus/mojo/properties/PropertyResolver.java
  */
 public class PropertyResolver {
 
+    // Upper bound on the number of distinct compiled expressions kept, as values may come from arbitrary property files.
+    private static final int MAX_TEMPLATES = 4096;
+
+    private static final ConcurrentMap<String, ExpressionTemplate> TEMPLATES = new ConcurrentHashMap<String, ExpressionTemplate>();
+
     /**
      * Retrieves a property value, replacing values like ${token} using the Properties to look them up. Shamelessly
      * adapted from:
@@ -51,10 +58,41 @@ public class PropertyResolver {
         return resolveValue(buffer, circularDefinitionPreventer, properties, environment);
     }
 
+    /**
+     * Resolves the placeholders in the given value. Values are compiled into (cached) templates, so repeatedly
+     * resolving the same expression only has to look up its placeholders.
+     *
+     * @param value       The value to resolve
+     * @param properties  project properties
+     * @param environment environment variables
+     * @return resolved value
+     * @throws IllegalArgumentException when properties are circularly defined
+     */
     public String resolveValue(String value, Properties properties, Properties environment) {
+        if (value != null) {
+            String resolved = getTemplate(value).resolve(properties, environment);
+            if (resolved != null) {
+                return resolved;
+            }
+        }
         return resolveValue(new ExpansionBuffer(value), new CircularDefinitionPreventer(), properties, environment);
     }
 
+    private ExpressionTemplate getTemplate(String value) {
+        ExpressionTemplate template = TEMPLATES.get(value);
+        if (template == null) {
+            if (TEMPLATES.size() >= MAX_TEMPLATES) {
+                TEMPLATES.clear();
+            }
+            template = ExpressionTemplate.compile(value);
+            ExpressionTemplate existing = TEMPLATES.putIfAbsent(value, template);
+            if (existing != null) {
+                template = existing;
+            }
+        }
+        return template;
+    }
+
     private String resolveValue(ExpansionBuffer buffer, CircularDefinitionPreventer circularDefinitionPreventer, Properties properties, Properties environment) {
         while (buffer.hasMoreLegalPlaceholders()) {
             String newKey = buffer.extractPropertyKey();
@@ -69,7 +107,7 @@ public class PropertyResolver {
 
     }
 
-    private String fromPropertiesThenSystemThenEnvironment(String key, Properties properties, Properties environment) {
+    static String fromPropertiesThenSystemThenEnvironment(String key, Properties properties, Properties environment) {
         String value = properties.getProperty(key);
 
         // try global environment
@@ -0,0 +1,52 @@
+package com.e_gineering.maven.gitflowhelper;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ArtifactCacheTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void evictionRemovesInterruptedStores() throws Exception {
+        File directory = temp.newFolder("cache");
+        File stale = file(new File(directory, ".incoming-stale/artifact.jar"), "interrupted");
+        assertTrue(stale.getParentFile().setLastModified(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(2)));
+        File legacy = file(new File(directory, ".incoming-legacy"), "interrupted");
+        assertTrue(legacy.setLastModified(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(2)));
+        File inProgress = file(new File(directory, ".incoming-fresh/artifact.jar"), "in progress");
+
+        File jar = file(new File(temp.getRoot(), "artifact.jar"), "jar contents");
+        ArtifactCatalog.Entry entry = ArtifactCatalog.Entry.of("com.example:artifact:jar:1.0", jar);
+        ArtifactCache cache = new ArtifactCache(directory, Long.MAX_VALUE, new SystemStreamLog());
+        cache.store(entry, jar);
+        cache.evict();
+
+        assertFalse(stale.getParentFile().exists());
+        assertFalse(legacy.exists());
+        assertTrue(inProgress.isFile());
+
+        File retrieved = new File(temp.getRoot(), "retrieved/artifact.jar");
+        assertTrue(cache.retrieve(entry, retrieved));
+        assertArrayEquals(Files.readAllBytes(jar.toPath()), Files.readAllBytes(retrieved.toPath()));
+    }
+
+    private static File file(final File file, final String content) throws IOException {
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(Charset.forName("UTF-8")));
+        return file;
+    }
+}
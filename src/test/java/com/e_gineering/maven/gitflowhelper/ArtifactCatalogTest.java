@@ -0,0 +1,136 @@
+package com.e_gineering.maven.gitflowhelper;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ArtifactCatalogTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void roundTripsVersion2() throws Exception {
+        File jar = file("artifact.jar", "jar contents");
+        File sources = file("artifact-sources.jar", "");
+
+        List<ArtifactCatalog.Entry> entries = Arrays.asList(
+                ArtifactCatalog.Entry.of("com.example:artifact:jar:1.0", jar),
+                ArtifactCatalog.Entry.of("com.example:artifact:jar:sources:1.0", sources),
+                ArtifactCatalog.Entry.of("com.example:artifact:pom:1.0", null));
+
+        String written = write(new ArtifactCatalog(entries), 2);
+        assertTrue(written, written.startsWith("# gitflow-helper-maven-plugin artifact catalog v2"));
+
+        List<ArtifactCatalog.Entry> read = ArtifactCatalog.read(file("catalog.txt", written)).getEntries();
+        assertEquals(3, read.size());
+        for (int i = 0; i < entries.size(); i++) {
+            assertEquals(entries.get(i).getCoordinates(), read.get(i).getCoordinates());
+            assertEquals(entries.get(i).getSize(), read.get(i).getSize());
+            assertEquals(entries.get(i).getSha256(), read.get(i).getSha256());
+        }
+
+        assertEquals(12, read.get(0).getSize());
+        assertEquals(64, read.get(0).getSha256().length());
+        // The SHA-256 digest of nothing at all.
+        assertEquals("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855", read.get(1).getSha256());
+        assertFalse(read.get(2).hasDigest());
+
+        assertTrue(read.get(0).matches(jar));
+        assertFalse(read.get(0).matches(sources));
+        assertFalse(read.get(0).matches(file("tampered.jar", "jar Contents")));
+        assertFalse(read.get(2).matches(jar));
+    }
+
+    @Test
+    public void writesVersion1WithCoordinatesOnly() throws Exception {
+        List<ArtifactCatalog.Entry> entries = Arrays.asList(
+                ArtifactCatalog.Entry.of("com.example:artifact:jar:1.0", file("artifact.jar", "jar contents")),
+                new ArtifactCatalog.Entry("com.example:artifact:pom:1.0", -1, null));
+
+        String written = write(new ArtifactCatalog(entries), 1);
+        assertEquals("com.example:artifact:jar:1.0\ncom.example:artifact:pom:1.0\n", written.replace("\r\n", "\n"));
+
+        List<ArtifactCatalog.Entry> read = ArtifactCatalog.read(file("catalog.txt", written)).getEntries();
+        assertEquals(2, read.size());
+        assertEquals("com.example:artifact:jar:1.0", read.get(0).getCoordinates());
+        assertFalse(read.get(0).hasDigest());
+    }
+
+    @Test
+    public void onlyDigestsArtifactsForVersion2() throws Exception {
+        File jar = file("artifact.jar", "jar contents");
+
+        ArtifactCatalog.Entry v1 = ArtifactCatalog.Entry.of("com.example:artifact:jar:1.0", jar, 1);
+        assertEquals("com.example:artifact:jar:1.0", v1.getCoordinates());
+        assertFalse(v1.hasDigest());
+
+        ArtifactCatalog.Entry v2 = ArtifactCatalog.Entry.of("com.example:artifact:jar:1.0", jar, 2);
+        assertEquals(12, v2.getSize());
+        assertTrue(v2.matches(jar));
+    }
+
+    @Test
+    public void readsVersion1Catalogs() throws Exception {
+        // As written by earlier releases of the plugin, with stray whitespace and blank lines.
+        File catalog = file("catalog.txt", "com.example:artifact:jar:1.0\n"
+                + "  com.example:artifact:jar:tests:1.0  \n"
+                + "\n"
+                + "com.example:artifact:pom:1.0\r\n");
+
+        List<ArtifactCatalog.Entry> read = ArtifactCatalog.read(catalog).getEntries();
+        assertEquals(3, read.size());
+        assertEquals("com.example:artifact:jar:1.0", read.get(0).getCoordinates());
+        assertEquals("com.example:artifact:jar:tests:1.0", read.get(1).getCoordinates());
+        assertEquals("com.example:artifact:pom:1.0", read.get(2).getCoordinates());
+        for (ArtifactCatalog.Entry entry : read) {
+            assertEquals(-1, entry.getSize());
+            assertNull(entry.getSha256());
+            assertFalse(entry.hasDigest());
+        }
+    }
+
+    @Test
+    public void rejectsMalformedSizes() throws Exception {
+        try {
+            ArtifactCatalog.read(file("catalog.txt", "com.example:artifact:jar:1.0\tlarge\tabcdef\n"));
+            fail("Expected a malformed catalog");
+        } catch (IOException ioe) {
+            assertTrue(ioe.getMessage(), ioe.getMessage().startsWith("Malformed artifact catalog"));
+        }
+    }
+
+    private static String write(final ArtifactCatalog catalog, final int version) {
+        StringWriter out = new StringWriter();
+        PrintWriter writer = new PrintWriter(out);
+        catalog.write(writer, version);
+        writer.flush();
+        return out.toString();
+    }
+
+    private File file(final String name, final String content) throws IOException {
+        File file = new File(temp.getRoot(), name);
+        OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+}
@@ -0,0 +1,46 @@
+package com.e_gineering.maven.gitflowhelper;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class AttachStrategyTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void replacesLinkedTargetsWithoutWritingThroughThem() throws Exception {
+        File repository = file("repository/artifact.jar", "in the repository");
+        File target = new File(temp.newFolder("target"), "artifact.jar");
+        Files.createLink(target.toPath(), repository.toPath());
+
+        for (AttachStrategy strategy : AttachStrategy.values()) {
+            File source = file(strategy + "/artifact.jar", "attached with " + strategy);
+            strategy.attach(source, target);
+
+            assertArrayEquals(Files.readAllBytes(source.toPath()), Files.readAllBytes(target.toPath()));
+            assertArrayEquals(strategy.toString(), "in the repository".getBytes(UTF_8), Files.readAllBytes(repository.toPath()));
+        }
+
+        assertEquals(Arrays.asList("artifact.jar"), Arrays.asList(target.getParentFile().list()));
+    }
+
+    private File file(final String path, final String content) throws IOException {
+        File file = new File(temp.getRoot(), path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(UTF_8));
+        return file;
+    }
+}
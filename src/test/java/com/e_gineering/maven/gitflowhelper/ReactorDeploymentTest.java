@@ -0,0 +1,76 @@
+package com.e_gineering.maven.gitflowhelper;
+
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.repository.internal.MavenRepositorySystemUtils;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.deployment.DeployRequest;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ReactorDeploymentTest {
+
+    private final MavenProject a = project("a");
+    private final MavenProject b = project("b");
+    private final MavenProject c = project("c");
+
+    @Test
+    public void startsOnceEveryModuleHasFinished() {
+        ReactorDeployment deployment = ReactorDeployment.obtain(MavenRepositorySystemUtils.newSession(), Arrays.asList(a, b, c));
+
+        assertFalse(deployment.add(b, new DeployRequest()));
+        assertFalse(deployment.add(a, null));
+        assertTrue(deployment.add(c, new DeployRequest()));
+    }
+
+    @Test
+    public void startsWithTheLastModuleOfTheReactor() {
+        ReactorDeployment deployment = ReactorDeployment.obtain(MavenRepositorySystemUtils.newSession(), Arrays.asList(a, b, c));
+
+        assertFalse(deployment.add(a, new DeployRequest()));
+        // b never runs the goal (or hasn't yet), the last module starts the deployment anyway.
+        assertTrue(deployment.add(c, new DeployRequest()));
+        // And a module finishing afterwards is deployed on its own.
+        assertTrue(deployment.add(b, new DeployRequest()));
+    }
+
+    @Test
+    public void isSharedWithinTheSession() {
+        RepositorySystemSession session = MavenRepositorySystemUtils.newSession();
+        assertSame(ReactorDeployment.obtain(session, Arrays.asList(a, b)), ReactorDeployment.obtain(session, Arrays.asList(a, b)));
+    }
+
+    @Test
+    public void reportsWhereMissingArtifactsCameFrom() throws Exception {
+        MavenProject project = project("promoted");
+        project.setPackaging("jar");
+        project.setArtifact(new DefaultArtifact("com.example", "promoted", "1.0", "compile", "jar", null, new DefaultArtifactHandler("jar")));
+
+        try {
+            ReactorDeployment.artifactsOf(project, "no artifacts were promoted from: stage");
+            fail("Expected the missing project artifact to be reported");
+        } catch (MojoExecutionException mee) {
+            assertEquals("The packaging for this project did not assign a file to the build artifact, no artifacts were promoted from: stage", mee.getMessage());
+        }
+
+        project.setPackaging("pom");
+        assertEquals(1, ReactorDeployment.artifactsOf(project, null).size());
+    }
+
+    private static MavenProject project(final String artifactId) {
+        MavenProject project = new MavenProject();
+        project.setGroupId("com.example");
+        project.setArtifactId(artifactId);
+        project.setVersion("1.0");
+        return project;
+    }
+}
@@ -0,0 +1,247 @@
+package com.e_gineering.maven.gitflowhelper;
+
+import org.apache.maven.model.Build;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.repository.internal.MavenRepositorySystemUtils;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.connector.file.FileRepositoryConnectorFactory;
+import org.eclipse.aether.impl.DefaultServiceLocator;
+import org.eclipse.aether.repository.LocalRepository;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.spi.connector.RepositoryConnectorFactory;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Promotes between two <code>file://</code> repositories, through a real repository system.
+ */
+public class RepositoryPromoterTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String VERSION_DIRECTORY = "com/example/promoted/1.0/";
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private RepositorySystem repositorySystem;
+
+    private DefaultRepositorySystemSession session;
+
+    private File stage;
+
+    private File release;
+
+    private MavenProject project;
+
+    @Before
+    public void setUp() throws Exception {
+        DefaultServiceLocator locator = MavenRepositorySystemUtils.newServiceLocator();
+        locator.addService(RepositoryConnectorFactory.class, FileRepositoryConnectorFactory.class);
+        repositorySystem = locator.getService(RepositorySystem.class);
+
+        session = MavenRepositorySystemUtils.newSession();
+        session.setLocalRepositoryManager(repositorySystem.newLocalRepositoryManager(session, new LocalRepository(temp.newFolder("local"))));
+
+        stage = temp.newFolder("stage");
+        release = temp.newFolder("release");
+
+        File pom = new File(temp.newFolder("project"), "pom.xml");
+        write(pom, "<project><modelVersion>4.0.0</modelVersion><groupId>com.example</groupId><artifactId>promoted</artifactId><version>1.0</version></project>".getBytes(UTF_8));
+
+        project = new MavenProject();
+        project.setGroupId("com.example");
+        project.setArtifactId("promoted");
+        project.setVersion("1.0");
+        project.setPackaging("jar");
+        project.setFile(pom);
+        Build build = new Build();
+        build.setDirectory(new File(pom.getParentFile(), "target").getAbsolutePath());
+        project.setBuild(build);
+    }
+
+    @Test
+    public void promotesBetweenLocalRepositories() throws Exception {
+        byte[] jar = randomBytes(256 * 1024);
+        byte[] sources = randomBytes(1000);
+        stageArtifacts(2, jar, sources);
+
+        int promoted = promoter().promote(session, project, repository("stage", stage), "stage::default::" + stage.toURI(), repository("release", release));
+        assertEquals(4, promoted);
+
+        for (String name : new String[]{"promoted-1.0.jar", "promoted-1.0-sources.jar", "promoted-1.0-catalog.txt"}) {
+            File staged = new File(stage, VERSION_DIRECTORY + name);
+            File released = new File(release, VERSION_DIRECTORY + name);
+
+            assertTrue("Still staged: " + name, staged.isFile());
+            assertArrayEquals("Byte identical: " + name, Files.readAllBytes(staged.toPath()), Files.readAllBytes(released.toPath()));
+            assertEquals("SHA-1 of: " + name, digest("SHA-1", released), read(new File(released.getPath() + ".sha1")));
+            assertEquals("MD5 of: " + name, digest("MD5", released), read(new File(released.getPath() + ".md5")));
+        }
+        assertArrayEquals(jar, Files.readAllBytes(new File(stage, VERSION_DIRECTORY + "promoted-1.0.jar").toPath()));
+
+        File pom = new File(release, VERSION_DIRECTORY + "promoted-1.0.pom");
+        assertArrayEquals(Files.readAllBytes(project.getFile().toPath()), Files.readAllBytes(pom.toPath()));
+        assertEquals(digest("SHA-1", pom), read(new File(pom.getPath() + ".sha1")));
+
+        // Written by the deployment of the pom, which the promotion finishes with.
+        File metadata = new File(release, "com/example/promoted/maven-metadata.xml");
+        assertTrue(metadata.isFile());
+        String content = read(metadata);
+        assertTrue(content, content.contains("<version>1.0</version>"));
+        assertEquals(digest("SHA-1", metadata), read(new File(metadata.getPath() + ".sha1")));
+
+        assertFalse("No temporary files left: " + Arrays.toString(new File(release, VERSION_DIRECTORY).list()), Arrays.toString(new File(release, VERSION_DIRECTORY).list()).contains(".promoting-"));
+    }
+
+    @Test
+    public void promotesVersion1Catalogs() throws Exception {
+        stageArtifacts(1, randomBytes(2048), randomBytes(10));
+
+        assertEquals(4, promoter().promote(session, project, repository("stage", stage), "stage", repository("release", release)));
+        assertArrayEquals(Files.readAllBytes(new File(stage, VERSION_DIRECTORY + "promoted-1.0.jar").toPath()),
+                Files.readAllBytes(new File(release, VERSION_DIRECTORY + "promoted-1.0.jar").toPath()));
+        assertTrue(new File(release, "com/example/promoted/maven-metadata.xml").isFile());
+    }
+
+    @Test
+    public void rejectsArtifactsNotMatchingTheCatalog() throws Exception {
+        stageArtifacts(2, randomBytes(2048), randomBytes(10));
+        File jar = new File(stage, VERSION_DIRECTORY + "promoted-1.0.jar");
+        byte[] tampered = Files.readAllBytes(jar.toPath());
+        tampered[0]++;
+        write(jar, tampered);
+
+        try {
+            promoter().promote(session, project, repository("stage", stage), "stage", repository("release", release));
+            fail("Expected the tampered artifact to be rejected");
+        } catch (MojoExecutionException mee) {
+            assertTrue(mee.getMessage(), mee.getMessage().contains("com.example:promoted:jar:1.0"));
+        }
+        assertFalse(new File(release, VERSION_DIRECTORY + "promoted-1.0.jar").exists());
+        assertFalse(new File(release, "com/example/promoted/maven-metadata.xml").exists());
+    }
+
+    @Test
+    public void rejectsArtifactsNotMatchingTheirChecksumWithVersion1Catalogs() throws Exception {
+        stageArtifacts(1, randomBytes(2048), randomBytes(10));
+        File jar = new File(stage, VERSION_DIRECTORY + "promoted-1.0.jar");
+        byte[] tampered = Files.readAllBytes(jar.toPath());
+        tampered[0]++;
+        write(jar, tampered);
+
+        try {
+            promoter().promote(session, project, repository("stage", stage), "stage", repository("release", release));
+            fail("Expected the tampered artifact to be rejected");
+        } catch (MojoExecutionException mee) {
+            assertTrue(mee.getMessage(), mee.getMessage().contains("does not match its SHA-1 checksum"));
+        }
+        assertFalse(new File(release, VERSION_DIRECTORY + "promoted-1.0.jar").exists());
+        assertFalse(new File(release, "com/example/promoted/maven-metadata.xml").exists());
+    }
+
+    @Test
+    public void rejectsArtifactsWithoutChecksumsWithVersion1Catalogs() throws Exception {
+        stageArtifacts(1, randomBytes(2048), randomBytes(10));
+        assertTrue(new File(stage, VERSION_DIRECTORY + "promoted-1.0-sources.jar.sha1").delete());
+
+        try {
+            promoter().promote(session, project, repository("stage", stage), "stage", repository("release", release));
+            fail("Expected the unverifiable artifact to be rejected");
+        } catch (MojoExecutionException mee) {
+            assertTrue(mee.getMessage(), mee.getMessage().contains("com.example:promoted:jar:sources:1.0 has no digest"));
+        }
+        assertFalse(new File(release, VERSION_DIRECTORY + "promoted-1.0-sources.jar").exists());
+    }
+
+    @Test
+    public void failsWithoutACatalog() throws Exception {
+        try {
+            promoter().promote(session, project, repository("stage", stage), "stage", repository("release", release));
+            fail("Expected a missing catalog");
+        } catch (MojoExecutionException mee) {
+            assertTrue(mee.getMessage(), mee.getMessage().startsWith("Could not locate artifact catalog in: stage"));
+        }
+    }
+
+    private RepositoryPromoter promoter() {
+        // Both repositories are local, so nothing is resolved through a CatalogResolver.
+        return new RepositoryPromoter(repositorySystem, null, new SystemStreamLog());
+    }
+
+    private void stageArtifacts(final int catalogVersion, final byte[] jar, final byte[] sources) throws IOException {
+        File jarFile = new File(stage, VERSION_DIRECTORY + "promoted-1.0.jar");
+        File sourcesFile = new File(stage, VERSION_DIRECTORY + "promoted-1.0-sources.jar");
+        write(jarFile, jar);
+        write(sourcesFile, sources);
+
+        File catalog = new File(stage, VERSION_DIRECTORY + "promoted-1.0-catalog.txt");
+        PrintWriter writer = new PrintWriter(catalog, "UTF-8");
+        try {
+            new ArtifactCatalog(Arrays.asList(
+                    ArtifactCatalog.Entry.of("com.example:promoted:jar:1.0", jarFile),
+                    ArtifactCatalog.Entry.of("com.example:promoted:jar:sources:1.0", sourcesFile))).write(writer, catalogVersion);
+        } finally {
+            writer.close();
+        }
+
+        // As deployed to stage by the repository system, which the catalog can't verify on its own in version 1.
+        for (File file : new File[]{jarFile, sourcesFile, catalog}) {
+            write(new File(file.getPath() + ".sha1"), (digest("SHA-1", file) + "  " + file.getName()).getBytes(UTF_8));
+        }
+    }
+
+    private static RemoteRepository repository(final String id, final File directory) {
+        return new RemoteRepository.Builder(id, "default", directory.toURI().toString()).build();
+    }
+
+    private static byte[] randomBytes(final int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static void write(final File file, final byte[] content) throws IOException {
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content);
+    }
+
+    private static String read(final File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), UTF_8).trim();
+    }
+
+    private static String digest(final String algorithm, final File file) throws IOException {
+        byte[] hash;
+        try {
+            hash = MessageDigest.getInstance(algorithm).digest(Files.readAllBytes(file.toPath()));
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new IllegalStateException(nsae);
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : hash) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
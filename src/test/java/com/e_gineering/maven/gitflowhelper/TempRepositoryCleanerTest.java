@@ -0,0 +1,93 @@
+package com.e_gineering.maven.gitflowhelper;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.repository.internal.MavenRepositorySystemUtils;
+import org.codehaus.plexus.util.FileUtils;
+import org.eclipse.aether.RepositorySystemSession;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TempRepositoryCleanerTest {
+
+    private final List<File> created = new ArrayList<File>();
+
+    @After
+    public void tearDown() throws IOException {
+        for (File directory : created) {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void isKeptPerSession() {
+        RepositorySystemSession session = MavenRepositorySystemUtils.newSession();
+        assertNull(TempRepositoryCleaner.find(session));
+        assertSame(TempRepositoryCleaner.of(session), TempRepositoryCleaner.find(session));
+        assertNull(TempRepositoryCleaner.find(MavenRepositorySystemUtils.newSession()));
+    }
+
+    @Test
+    public void deletesEverythingWhenTheSessionEnds() throws Exception {
+        TempRepositoryCleaner cleaner = TempRepositoryCleaner.of(MavenRepositorySystemUtils.newSession());
+        File deleted = cleaner.create(new SystemStreamLog());
+        File leftOver = cleaner.create(new SystemStreamLog());
+        created.add(deleted);
+        created.add(leftOver);
+        assertTrue(new File(deleted, "com/example").mkdirs());
+
+        cleaner.delete(deleted, new SystemStreamLog());
+        cleaner.close(new SystemStreamLog());
+
+        assertFalse(deleted.exists());
+        assertFalse(leftOver.exists());
+    }
+
+    @Test
+    public void onlySweepsAbandonedRepositories() throws Exception {
+        File abandoned = staleRepository(true);
+        File unmarked = staleRepository(false);
+        File inUse = staleRepository(true);
+
+        FileChannel channel = new RandomAccessFile(new File(inUse, ".in-use"), "rw").getChannel();
+        try {
+            // Held by another session of this JVM, just as another process would hold it.
+            FileLock lock = channel.lock();
+            TempRepositoryCleaner cleaner = TempRepositoryCleaner.of(MavenRepositorySystemUtils.newSession());
+            created.add(cleaner.create(new SystemStreamLog()));
+            cleaner.close(new SystemStreamLog());
+            lock.release();
+        } finally {
+            channel.close();
+        }
+
+        assertFalse(abandoned.exists());
+        assertTrue(unmarked.isDirectory());
+        assertTrue(inUse.isDirectory());
+    }
+
+    private File staleRepository(final boolean marked) throws IOException {
+        File directory = new File(System.getProperty("java.io.tmpdir"), TempRepositoryCleaner.PREFIX + "-test-" + UUID.randomUUID());
+        created.add(directory);
+        assertTrue(new File(directory, "com/example").mkdirs());
+        if (marked) {
+            assertTrue(new File(directory, ".in-use").createNewFile());
+        }
+        assertTrue(directory.setLastModified(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(2)));
+        return directory;
+    }
+}
@@ -0,0 +1,212 @@
+package com.e_gineering.maven.gitflowhelper.git;
+
+import org.apache.maven.scm.ScmFileSet;
+import org.apache.maven.scm.log.ScmLogDispatcher;
+import org.apache.maven.scm.provider.git.gitexe.command.branch.GitBranchCommand;
+import org.apache.maven.scm.provider.git.repository.GitScmProviderRepository;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class GitRepositoryReaderTest {
+
+    private static final String COMMIT_A = "1111111111111111111111111111111111111111";
+    private static final String COMMIT_B = "2222222222222222222222222222222222222222";
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void readsBranchFromLooseRef() throws Exception {
+        File workTree = temp.newFolder("loose");
+        File gitDir = gitDir(workTree, "ref: refs/heads/feature/some-thing");
+        write(new File(gitDir, "refs/heads/feature/some-thing"), COMMIT_A);
+
+        assertEquals("feature/some-thing", GitRepositoryReader.find(workTree).getCurrentBranch());
+    }
+
+    @Test
+    public void readsBranchWhoseRefIsOnlyPacked() throws Exception {
+        File workTree = temp.newFolder("packed");
+        File gitDir = gitDir(workTree, "ref: refs/heads/release/1.0");
+        write(new File(gitDir, "packed-refs"), "# pack-refs with: peeled fully-peeled sorted\n" + COMMIT_A + " refs/heads/release/1.0\n");
+
+        assertEquals("release/1.0", GitRepositoryReader.find(workTree).getCurrentBranch());
+    }
+
+    @Test
+    public void resolvesDetachedHeadThroughPackedRefs() throws Exception {
+        File workTree = temp.newFolder("detached-packed");
+        File gitDir = gitDir(workTree, COMMIT_A);
+        write(new File(gitDir, "packed-refs"), "# pack-refs with: peeled fully-peeled sorted\n"
+                + COMMIT_B + " refs/tags/v1.0\n^" + COMMIT_A + "\n" + COMMIT_A + " refs/heads/hotfix/1.0.1\n");
+
+        assertEquals("hotfix/1.0.1", GitRepositoryReader.find(workTree).getCurrentBranch());
+    }
+
+    @Test
+    public void looseRefsTakePrecedenceOverPackedRefs() throws Exception {
+        File workTree = temp.newFolder("loose-over-packed");
+        File gitDir = gitDir(workTree, COMMIT_A);
+        write(new File(gitDir, "packed-refs"), COMMIT_A + " refs/heads/develop\n");
+        write(new File(gitDir, "refs/heads/develop"), COMMIT_B);
+
+        // The packed develop is stale, so nothing points at the detached commit any longer.
+        assertNull(GitRepositoryReader.find(workTree).getCurrentBranch());
+
+        write(new File(gitDir, "HEAD"), COMMIT_B);
+        assertEquals("develop", GitRepositoryReader.find(workTree).getCurrentBranch());
+    }
+
+    @Test
+    public void prefersLocalBranchesAndSkipsRemoteHeadForDetachedHead() throws Exception {
+        File workTree = temp.newFolder("detached-remote");
+        File gitDir = gitDir(workTree, COMMIT_A);
+        write(new File(gitDir, "refs/remotes/origin/HEAD"), "ref: refs/remotes/origin/master");
+        write(new File(gitDir, "refs/remotes/origin/master"), COMMIT_A);
+
+        assertEquals("origin/master", GitRepositoryReader.find(workTree).getCurrentBranch());
+
+        write(new File(gitDir, "refs/heads/master"), COMMIT_A);
+        assertEquals("master", GitRepositoryReader.find(workTree).getCurrentBranch());
+    }
+
+    @Test
+    public void readsLinkedWorktreeThroughCommondir() throws Exception {
+        File main = temp.newFolder("main");
+        File mainGitDir = gitDir(main, "ref: refs/heads/master");
+        write(new File(mainGitDir, "refs/heads/master"), COMMIT_A);
+        write(new File(mainGitDir, "refs/heads/support/2.x"), COMMIT_B);
+
+        File worktreeGitDir = new File(mainGitDir, "worktrees/linked");
+        write(new File(worktreeGitDir, "HEAD"), COMMIT_B);
+        write(new File(worktreeGitDir, "commondir"), "../..");
+
+        File linked = temp.newFolder("linked");
+        write(new File(linked, ".git"), "gitdir: " + worktreeGitDir.getAbsolutePath());
+
+        GitRepositoryReader reader = GitRepositoryReader.find(linked);
+        assertEquals(worktreeGitDir.getAbsolutePath(), reader.getGitDir().getAbsolutePath());
+        assertEquals("support/2.x", reader.getCurrentBranch());
+    }
+
+    @Test
+    public void readsSubmoduleThroughRelativeGitFile() throws Exception {
+        File superProject = temp.newFolder("super");
+        gitDir(superProject, "ref: refs/heads/master");
+
+        File moduleGitDir = new File(superProject, ".git/modules/sub");
+        write(new File(moduleGitDir, "HEAD"), "ref: refs/heads/develop");
+
+        File sub = new File(superProject, "sub");
+        write(new File(sub, ".git"), "gitdir: ../.git/modules/sub");
+
+        assertEquals("develop", GitRepositoryReader.find(sub).getCurrentBranch());
+    }
+
+    @Test
+    public void findsRepositoryFromNestedDirectory() throws Exception {
+        File workTree = temp.newFolder("nested");
+        gitDir(workTree, "ref: refs/heads/master");
+        File module = new File(workTree, "parent/module");
+        module.mkdirs();
+
+        assertEquals("master", GitRepositoryReader.find(module).getCurrentBranch());
+    }
+
+    @Test
+    public void returnsNullOutsideOfAWorkingCopy() throws Exception {
+        File dir = temp.newFolder("not-a-repo");
+        GitRepositoryReader reader = GitRepositoryReader.find(dir);
+        // The temporary directory could itself be within a working copy.
+        if (reader != null) {
+            assertNotNull(reader.getGitDir());
+        }
+        assertNull(GitRepositoryReader.find(null));
+    }
+
+    /**
+     * Builds real repositories (a plain one and a linked worktree) with the git executable, and checks the reader gives
+     * the same answers as the GitBranchCommand the plugin falls back to.
+     */
+    @Test
+    public void agreesWithGitBranchCommand() throws Exception {
+        Assume.assumeTrue(gitAvailable());
+
+        File main = temp.newFolder("git-main");
+        git(main, "init", "-q");
+        git(main, "commit", "-q", "--allow-empty", "-m", "initial");
+        git(main, "checkout", "-q", "-b", "feature/compare");
+        git(main, "pack-refs", "--all");
+
+        File linked = new File(temp.getRoot(), "git-linked");
+        git(main, "worktree", "add", "-q", "-b", "release/3.0", linked.getAbsolutePath());
+
+        File module = new File(main, "module");
+        module.mkdirs();
+
+        for (File dir : new File[]{main, module, linked}) {
+            assertEquals(gitBranchCommand(dir), GitRepositoryReader.find(dir).getCurrentBranch());
+        }
+    }
+
+    private static File gitDir(final File workTree, final String head) throws IOException {
+        File gitDir = new File(workTree, ".git");
+        new File(gitDir, "refs/heads").mkdirs();
+        new File(gitDir, "objects").mkdirs();
+        write(new File(gitDir, "HEAD"), head);
+        return gitDir;
+    }
+
+    private static void write(final File file, final String content) throws IOException {
+        file.getParentFile().mkdirs();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(content);
+            writer.write('\n');
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static String gitBranchCommand(final File dir) throws Exception {
+        return GitBranchCommand.getCurrentBranch(new ScmLogDispatcher(), new GitScmProviderRepository("file://" + dir.getAbsolutePath()), new ScmFileSet(dir));
+    }
+
+    private static boolean gitAvailable() {
+        try {
+            return new ProcessBuilder("git", "--version").redirectErrorStream(true).start().waitFor() == 0;
+        } catch (Exception ex) {
+            return false;
+        }
+    }
+
+    private static void git(final File dir, final String... args) throws Exception {
+        String[] command = new String[args.length + 5];
+        command[0] = "git";
+        command[1] = "-c";
+        command[2] = "user.name=test";
+        command[3] = "-c";
+        command[4] = "user.email=test@example.com";
+        System.arraycopy(args, 0, command, 5, args.length);
+
+        Process process = new ProcessBuilder(command).directory(dir).redirectErrorStream(true).start();
+        InputStream out = process.getInputStream();
+        while (out.read() != -1) {
+            // Drain the output, so git can't block on it.
+        }
+        assertEquals("git " + args[0] + " failed", 0, process.waitFor());
+    }
+}
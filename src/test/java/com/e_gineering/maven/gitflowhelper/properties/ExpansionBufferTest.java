@@ -0,0 +1,191 @@
+package com.e_gineering.maven.gitflowhelper.properties;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Checks ExpansionBuffer against the String based buffer it replaced, which is kept here as the reference.
+ */
+public class ExpansionBufferTest {
+
+    private static final int MAX_STEPS = 200;
+
+    @Test
+    public void resolvesPlainText() {
+        assertEquivalent("no placeholders at all", values());
+        assertEquivalent("", values());
+        assertEquivalent(null, values());
+    }
+
+    @Test
+    public void resolvesNestedExpressions() {
+        Map<String, String> values = values("a", "${b}-${c}", "b", "${c}${c}", "c", "x", "ab", "nested");
+        assertEquals("xx-x", assertEquivalent("${a}", values));
+        assertEquivalent("<${a}>", values);
+        // The inner placeholder is closed by the first '}', the way the original buffer did it.
+        assertEquivalent("${a${b}}", values);
+    }
+
+    @Test
+    public void resolvesAdjacentExpressions() {
+        Map<String, String> values = values("a", "1", "b", "2", "c", "${a}${b}");
+        assertEquals("1212", assertEquivalent("${a}${b}${c}", values));
+        assertEquivalent("${a}}${b}", values);
+        assertEquivalent("$${a}", values);
+        assertEquivalent("${a}$", values);
+    }
+
+    @Test
+    public void leavesUnresolvedAndUnterminatedExpressions() {
+        Map<String, String> values = values("a", "1", "open", "${a", "dollar", "$");
+        assertEquals("${missing}-1", assertEquivalent("${missing}-${a}", values));
+        assertEquals("1-${a", assertEquivalent("${a}-${a", values));
+        assertEquivalent("${", values);
+        assertEquivalent("${a", values);
+        assertEquivalent("x${open}}", values);
+        assertEquivalent("${dollar}{a}", values);
+        assertEquivalent("${}", values);
+    }
+
+    @Test
+    public void treatsEscapedExpressionsLikeTheOriginal() {
+        // Neither buffer has an escape syntax, these are all expanded (or left alone) the same way.
+        Map<String, String> values = values("a", "1", "esc", "\\${a}", "$", "dollar");
+        assertEquivalent("\\${a}", values);
+        assertEquivalent("$\\{a}", values);
+        assertEquivalent("$${a}}", values);
+        assertEquivalent("${esc}", values);
+        assertEquivalent("${$}", values);
+    }
+
+    @Test
+    public void growsPastTheInitialCapacity() {
+        StringBuilder big = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            big.append("value ").append(i).append(' ');
+        }
+        Map<String, String> values = values("big", big.toString(), "twice", "${big}${big}", "deep", "${twice}${twice}${tiny}", "tiny", "t");
+        assertEquals(big.toString() + big + big + big + "t", assertEquivalent("${deep}", values));
+        assertEquivalent("a${tiny}b${deep}c${tiny}", values);
+    }
+
+    @Test
+    public void toStringMidExpansion() {
+        Map<String, String> values = values("a", "${b}x", "b", "y");
+        ExpansionBuffer buffer = new ExpansionBuffer("pre ${a} post");
+        ReferenceBuffer reference = new ReferenceBuffer("pre ${a} post");
+        while (buffer.hasMoreLegalPlaceholders()) {
+            String key = buffer.extractPropertyKey();
+            assertEquals(reference.extractPropertyKey(), key);
+            buffer.add(key, values.get(key));
+            reference.add(key, values.get(key));
+            assertEquals(reference.toString(), buffer.toString());
+        }
+        assertFalse(reference.hasMoreLegalPlaceholders());
+    }
+
+    @Test
+    public void matchesTheOriginalOnRandomInput() {
+        String[] fragments = {"${", "}", "$", "{", "a", "b", "c", "${a}", "${b}", "${c}", "${d}", "x", "\\", " "};
+        Random random = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            Map<String, String> values = values("a", randomText(random, fragments), "b", randomText(random, fragments), "c", randomText(random, fragments));
+            assertEquivalent(randomText(random, fragments), values);
+        }
+    }
+
+    private static String randomText(final Random random, final String[] fragments) {
+        StringBuilder text = new StringBuilder();
+        int length = random.nextInt(10);
+        for (int i = 0; i < length; i++) {
+            text.append(fragments[random.nextInt(fragments.length)]);
+        }
+        return text.toString();
+    }
+
+    private static Map<String, String> values(final String... keysAndValues) {
+        Map<String, String> values = new HashMap<String, String>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            values.put(keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return values;
+    }
+
+    /**
+     * Expands the text with both buffers, asserting they ask for the same keys and produce the same text.
+     *
+     * @return The expanded text
+     */
+    private static String assertEquivalent(final String text, final Map<String, String> values) {
+        ExpansionBuffer buffer = new ExpansionBuffer(text);
+        ReferenceBuffer reference = new ReferenceBuffer(text);
+
+        List<String> keys = new ArrayList<String>();
+        List<String> referenceKeys = new ArrayList<String>();
+        // Self referencing values never terminate, so both are cut off after the same number of steps.
+        for (int step = 0; step < MAX_STEPS && reference.hasMoreLegalPlaceholders(); step++) {
+            assertEquals("hasMoreLegalPlaceholders: " + text, true, buffer.hasMoreLegalPlaceholders());
+            String key = buffer.extractPropertyKey();
+            String referenceKey = reference.extractPropertyKey();
+            keys.add(key);
+            referenceKeys.add(referenceKey);
+            assertEquals("Keys of: " + text, referenceKeys, keys);
+
+            buffer.add(key, values.get(key));
+            reference.add(referenceKey, values.get(referenceKey));
+        }
+        assertEquals("hasMoreLegalPlaceholders: " + text, reference.hasMoreLegalPlaceholders(), buffer.hasMoreLegalPlaceholders());
+
+        String expected = reference.toString();
+        assertEquals("Expansion of: " + text, expected, buffer.toString());
+        return expected;
+    }
+
+    /**
+     * The String based buffer from the properties-maven-plugin, as ExpansionBuffer was before it was reworked.
+     */
+    private static final class ReferenceBuffer {
+        private final StringBuilder resolved = new StringBuilder();
+
+        private String unresolved;
+
+        private ReferenceBuffer(String unresolved) {
+            this.unresolved = unresolved != null ? unresolved : "";
+        }
+
+        private boolean hasMoreLegalPlaceholders() {
+            int prefixPos = unresolved.indexOf("${");
+            int suffixPos = unresolved.indexOf("}", prefixPos + 2);
+            return prefixPos >= 0 && suffixPos >= 0;
+        }
+
+        private String extractPropertyKey() {
+            resolved.append(unresolved.substring(0, unresolved.indexOf("${")));
+            unresolved = unresolved.substring(unresolved.indexOf("${") + 2);
+            String key = unresolved.substring(0, unresolved.indexOf("}"));
+            unresolved = unresolved.substring(unresolved.indexOf("}") + 1);
+            return key;
+        }
+
+        private void add(String newKey, String newValue) {
+            if (newValue != null) {
+                unresolved = newValue + unresolved;
+            } else {
+                resolved.append("${").append(newKey).append("}");
+            }
+        }
+
+        @Override
+        public String toString() {
+            return new StringBuilder(resolved).append(unresolved).toString();
+        }
+    }
+}
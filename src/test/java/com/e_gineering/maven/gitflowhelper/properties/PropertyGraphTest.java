@@ -0,0 +1,92 @@
+package com.e_gineering.maven.gitflowhelper.properties;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class PropertyGraphTest {
+
+    @Test
+    public void ordersPropertiesAfterTheirReferences() {
+        Map<String, String> properties = properties("c", "${b}/c", "b", "${a}/b", "a", "a", "d", "${undefined}");
+        assertEquals(Arrays.asList("a", "b", "c", "d"), PropertyGraph.resolutionOrder(properties));
+    }
+
+    @Test
+    public void selfReferenceToAnExistingPropertyIsNotCircular() {
+        Properties existing = new Properties();
+        existing.setProperty("path", "/usr/bin");
+
+        Map<String, String> properties = properties("bin", "${path}", "path", "${path}:/opt/bin");
+        assertEquals(Arrays.asList("path", "bin"), PropertyGraph.resolutionOrder(properties, existing, null));
+    }
+
+    @Test
+    public void selfReferenceToAnExistingSystemOrEnvironmentPropertyIsNotCircular() {
+        String key = PropertyGraphTest.class.getName() + ".path";
+        System.setProperty(key, "/usr/bin");
+        try {
+            assertEquals(Arrays.asList(key), PropertyGraph.resolutionOrder(properties(key, "${" + key + "}:/opt/bin"), new Properties(), null));
+        } finally {
+            System.clearProperty(key);
+        }
+
+        Properties environment = new Properties();
+        environment.setProperty("PATH", "/usr/bin");
+        assertEquals(Arrays.asList("env.PATH"), PropertyGraph.resolutionOrder(properties("env.PATH", "${env.PATH}:/opt/bin"), new Properties(), environment));
+    }
+
+    @Test
+    public void selfReferenceToAnUndefinedPropertyIsCircular() {
+        Properties existing = new Properties();
+        existing.setProperty("other", "value");
+
+        assertCircular("Circular property definition: path=${path}:/opt/bin -> path=${path}:/opt/bin",
+                properties("path", "${path}:/opt/bin"), existing);
+    }
+
+    @Test
+    public void existingDefinitionsDoNotBreakLongerCycles() {
+        // Properties of the set take precedence over the existing ones, so only a self reference can refer to them.
+        Properties existing = new Properties();
+        existing.setProperty("a", "1");
+        existing.setProperty("b", "2");
+
+        assertCircular("Circular property definition: a=${b} -> b=${a} -> a=${b}", properties("a", "${b}", "b", "${a}"), existing);
+    }
+
+    @Test
+    public void describesTheShortestCycleThroughTheFirstProperty() {
+        assertCircular("Circular property definition: a=${b}${c} -> c=${a} -> a=${b}${c}",
+                properties("a", "${b}${c}", "b", "${c}", "c", "${a}"), new Properties());
+    }
+
+    @Test
+    public void describesEveryCycle() {
+        assertCircular("Circular property definitions: a=${b} -> b=${a} -> a=${b}; c=x${c} -> c=x${c}",
+                properties("a", "${b}", "b", "${a}", "ok", "${a}", "c", "x${c}"), new Properties());
+    }
+
+    private static Map<String, String> properties(final String... keysAndValues) {
+        Map<String, String> properties = new LinkedHashMap<String, String>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            properties.put(keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return properties;
+    }
+
+    private static void assertCircular(final String message, final Map<String, String> properties, final Properties existing) {
+        try {
+            PropertyGraph.resolutionOrder(properties, existing, null);
+            fail("Expected a circular definition: " + properties);
+        } catch (IllegalArgumentException iae) {
+            assertEquals(message, iae.getMessage());
+        }
+    }
+}